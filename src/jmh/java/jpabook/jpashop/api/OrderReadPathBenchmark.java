@@ -0,0 +1,95 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.bench.ShopState;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 주문 조회 전략별 비교 (H2, 요청 하나 = 읽기 전용 트랜잭션 하나)
+ * - 처리량(thrpt), 지연시간 분포(sample: p50/p90/p99), 할당량(gc 프로파일러), 호출당 SQL 수([sql] 출력)
+ * - JSON 직렬화는 제외하고 조회 + DTO 변환까지만 측정한다.
+ * - 컨트롤러의 package-private DTO 를 그대로 쓰기 위해 api 패키지에 둔다.
+ * ./gradlew jmh -PjmhInclude=OrderReadPathBenchmark
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OrderReadPathBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Beans {
+        OrderApiController orderApi;
+        OrderSimpleApiController orderSimpleApi;
+        OrderQueryRepository orderQueryRepository;
+
+        @Setup(Level.Trial)
+        public void setUp(ShopState shop) {
+            orderApi = shop.getBean(OrderApiController.class);
+            orderSimpleApi = shop.getBean(OrderSimpleApiController.class);
+            orderQueryRepository = shop.getBean(OrderQueryRepository.class);
+        }
+    }
+
+    //==/api/v*/orders==//
+    @Benchmark
+    public Object ordersV1_entity(ShopState shop, Beans beans) {
+        return shop.request(() -> beans.orderApi.ordersV1());
+    }
+
+    @Benchmark
+    public Object ordersV2_lazyDto(ShopState shop, Beans beans) {
+        return shop.request(() -> beans.orderApi.ordersV2());
+    }
+
+    @Benchmark
+    public Object ordersV3_fetchJoin(ShopState shop, Beans beans) {
+        return shop.request(() -> beans.orderApi.ordersV3());
+    }
+
+    @Benchmark
+    public Object ordersV3_1_page(ShopState shop, Beans beans) {
+        return shop.request(() -> beans.orderApi.ordersV3_page(0, 100));
+    }
+
+    @Benchmark
+    public Object ordersV3_2_cursor(ShopState shop, Beans beans) {
+        return shop.request(() -> beans.orderApi.ordersV3_cursor(null, 100));
+    }
+
+    @Benchmark
+    public Object ordersV4_dto1PlusN(ShopState shop, Beans beans) {
+        return shop.request(() -> beans.orderQueryRepository.findOrderQueryDtos());
+    }
+
+    @Benchmark
+    public Object ordersV5_dto1Plus1(ShopState shop, Beans beans) {
+        return shop.request(() -> beans.orderQueryRepository.findAllByDto_optimization());
+    }
+
+    @Benchmark
+    public Object ordersV6_flat(ShopState shop, Beans beans) {
+        return shop.request(() -> beans.orderApi.ordersV6());
+    }
+
+    //==/api/v*/simple-orders==//
+    @Benchmark
+    public Object simpleOrdersV1_entity(ShopState shop, Beans beans) {
+        return shop.request(() -> beans.orderSimpleApi.ordersV1());
+    }
+
+    @Benchmark
+    public Object simpleOrdersV2_lazyDto(ShopState shop, Beans beans) {
+        return shop.request(() -> beans.orderSimpleApi.ordersV2());
+    }
+
+    @Benchmark
+    public Object simpleOrdersV3_fetchJoin(ShopState shop, Beans beans) {
+        return shop.request(() -> beans.orderSimpleApi.ordersV3());
+    }
+
+    @Benchmark
+    public Object simpleOrdersV4_dto(ShopState shop, Beans beans) {
+        return shop.request(() -> beans.orderSimpleApi.ordersV4());
+    }
+}
@@ -0,0 +1,106 @@
+package jpabook.jpashop.bench;
+
+import jpabook.jpashop.domain.*;
+import jpabook.jpashop.domain.item.Book;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 벤치마크용 데이터 적재
+ * BATCH 건마다 flush/clear 해서 적재 중에도 영속성 컨텍스트가 커지지 않게 한다.
+ */
+class DataSeeder {
+
+    private static final int BATCH = 1000;
+
+    private final EntityManagerFactory emf;
+
+    DataSeeder(EntityManagerFactory emf) {
+        this.emf = emf;
+    }
+
+    void seed(int members, int items, int orders, int itemsPerOrder) {
+        seedOrders(seedMembers(members), seedItems(items), orders, itemsPerOrder);
+    }
+
+    List<Long> seedMembers(int members) {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+
+        List<Long> memberIds = new ArrayList<>(members);
+        for (int i = 0; i < members; i++) {
+            Member member = new Member();
+            member.setName("member" + i);
+            member.setAddress(new Address("city" + i % 10, "street" + i, "zip" + i));
+            em.persist(member);
+            memberIds.add(member.getId());
+            flushAndClearPeriodically(em, i);
+        }
+
+        em.getTransaction().commit();
+        em.close();
+        return memberIds;
+    }
+
+    List<Long> seedItems(int items) {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+
+        List<Long> itemIds = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            Book book = new Book();
+            book.setName("book" + i);
+            book.setPrice(1000 + i * 10);
+            book.setStockQuantity(Integer.MAX_VALUE);
+            em.persist(book);
+            itemIds.add(book.getId());
+            flushAndClearPeriodically(em, i);
+        }
+
+        em.getTransaction().commit();
+        em.close();
+        return itemIds;
+    }
+
+    void seedOrders(List<Long> memberIds, List<Long> itemIds, int orders, int itemsPerOrder) {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < orders; i++) {
+            Member member = em.getReference(Member.class, memberIds.get(i % memberIds.size()));
+
+            OrderItem[] orderItems = new OrderItem[itemsPerOrder];
+            for (int j = 0; j < itemsPerOrder; j++) {
+                Book book = em.find(Book.class, itemIds.get((i + j) % itemIds.size()));
+                orderItems[j] = OrderItem.createOrderItem(book, book.getPrice(), 1);
+            }
+
+            Delivery delivery = new Delivery();
+            delivery.setAddress(new Address("city", "street", "zip"));
+            delivery.setStatus(DeliveryStatus.READY);
+
+            Order order = Order.createOrder(member, delivery, orderItems);
+            order.setOrderDate(now.minusMinutes(i)); //1분 간격으로 과거로 분산 (기간 검색용)
+            if (i % 10 == 9) {
+                order.setStatus(OrderStatus.CANCEL); //10% 는 취소 상태
+            }
+            em.persist(order);
+            flushAndClearPeriodically(em, i);
+        }
+
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    private void flushAndClearPeriodically(EntityManager em, int i) {
+        if ((i + 1) % BATCH == 0) {
+            em.flush();
+            em.clear();
+        }
+    }
+}
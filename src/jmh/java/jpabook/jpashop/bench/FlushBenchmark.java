@@ -0,0 +1,79 @@
+package jpabook.jpashop.bench;
+
+import jpabook.jpashop.domain.OrderItem;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * flush 비용: 주문상품 orderItems 개가 영속 상태인 영속성 컨텍스트 하나를 계속 flush
+ * - flushClean: 바뀐 엔티티 없음 (dirty checking 비용만)
+ * - flushOneChanged: 주문상품 하나의 수량을 바꾸고 flush (update 1번)
+ * 바이트코드 향상(build.gradle 의 hibernate.enhance) 여부로 비교한다.
+ * 향상하지 않으면 flush 마다 모든 엔티티를 스냅샷과 비교하고, 향상하면 엔티티가 기록한 변경 속성만 본다.
+ * ./gradlew jmh -PjmhInclude=FlushBenchmark 와 ./gradlew jmh -PjmhInclude=FlushBenchmark -PhibernateEnhance=false
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FlushBenchmark {
+
+    @State(Scope.Thread)
+    public static class ManagedOrderItems {
+
+        @Param({"10000"})
+        public int orderItems;
+
+        EntityManager em;
+        List<OrderItem> loaded;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(ShopState shop) {
+            EntityManagerFactory emf = shop.getBean(EntityManagerFactory.class);
+            seedMissing(emf);
+
+            //trial 동안 트랜잭션 하나를 열어 두고 롤백한다.
+            em = emf.createEntityManager();
+            em.getTransaction().begin();
+            loaded = em.createQuery("select oi from OrderItem oi order by oi.id", OrderItem.class)
+                    .setMaxResults(orderItems)
+                    .getResultList();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            em.getTransaction().rollback();
+            em.close();
+        }
+
+        //ShopState 가 넣은 주문상품(orders * itemsPerOrder)이 모자라면 같은 회원/상품으로 주문을 더 넣는다.
+        private void seedMissing(EntityManagerFactory emf) {
+            EntityManager read = emf.createEntityManager();
+            long existing = read.createQuery("select count(oi) from OrderItem oi", Long.class).getSingleResult();
+            List<Long> memberIds = read.createQuery("select m.id from Member m", Long.class).getResultList();
+            List<Long> itemIds = read.createQuery("select i.id from Book i", Long.class).getResultList();
+            read.close();
+
+            int itemsPerOrder = 10;
+            long missing = orderItems - existing;
+            if (missing > 0) {
+                new DataSeeder(emf).seedOrders(memberIds, itemIds, (int) ((missing + itemsPerOrder - 1) / itemsPerOrder), itemsPerOrder);
+            }
+        }
+    }
+
+    @Benchmark
+    public void flushClean(ManagedOrderItems state) {
+        state.em.flush();
+    }
+
+    @Benchmark
+    public void flushOneChanged(ManagedOrderItems state) {
+        OrderItem orderItem = state.loaded.get(state.next++ % state.loaded.size());
+        orderItem.setCount(orderItem.getCount() + 1);
+        state.em.flush();
+    }
+}
@@ -0,0 +1,75 @@
+package jpabook.jpashop.bench;
+
+import jpabook.jpashop.JpashopApplication;
+import jpabook.jpashop.domain.PooledLoSequenceGenerator;
+import jpabook.jpashop.monitoring.QueryCounter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 주문 적재 시 DB 왕복 수: id 할당 크기 1(persist 마다 시퀀스 조회) vs 50(pooled-lo)
+ * - 호출 1번 = 주문 orders 건 적재 (주문당 배송 1 + 주문상품 itemsPerOrder)
+ * - 실행한 JDBC 문(배치는 1번)을 QueryCounter 로 세서 trial 종료 시 출력한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class IdGenerationBenchmark {
+
+    @Param({"1", "50"})
+    public int allocationSize;
+
+    @Param({"10000"})
+    public int orders;
+
+    @Param({"3"})
+    public int itemsPerOrder;
+
+    private ConfigurableApplicationContext context;
+    private DataSeeder seeder;
+    private List<Long> memberIds;
+    private List<Long> itemIds;
+
+    private long roundTrips;
+    private int invocations;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(JpashopApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.jpa.open-in-view=false",
+                        "--spring.jpa.properties." + PooledLoSequenceGenerator.ALLOCATION_SIZE + "=" + allocationSize,
+                        "--logging.level.org.hibernate.SQL=warn",
+                        "--spring.main.banner-mode=off");
+
+        seeder = new DataSeeder(context.getBean(EntityManagerFactory.class));
+        memberIds = seeder.seedMembers(100);
+        itemIds = seeder.seedItems(100);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        System.out.printf("%n[sql] allocationSize=%d: %d round-trips per %d orders%n", allocationSize, roundTrips / invocations, orders);
+        context.close();
+    }
+
+    @Benchmark
+    public void seedOrders() {
+        QueryCounter counter = QueryCounter.begin();
+        try {
+            seeder.seedOrders(memberIds, itemIds, orders, itemsPerOrder);
+        } finally {
+            QueryCounter.end();
+        }
+        roundTrips += counter.getStatementCount();
+        invocations++;
+    }
+}
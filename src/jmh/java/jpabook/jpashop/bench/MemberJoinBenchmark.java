@@ -0,0 +1,75 @@
+package jpabook.jpashop.bench;
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.repository.MemberRepositoryV2;
+import jpabook.jpashop.service.MemberNameFilter;
+import jpabook.jpashop.service.MemberService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 대량 회원 가입: 가입 1건당 비용
+ * - findByName: 이전 방식 (같은 이름 회원 엔티티 목록을 읽어 비었는지 확인)
+ * - existsByName: 존재 여부만 확인
+ * - join: 이름 필터로 중복 확인 생략 + 유니크 제약 (MemberService.join)
+ * 모두 처음 보는 이름으로 가입한다. (대부분의 가입이 이 경우)
+ * ./gradlew jmh -PjmhInclude=MemberJoinBenchmark 에 -p members=100000 -p orders=0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberJoinBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class JoinState {
+
+        private final AtomicLong sequence = new AtomicLong();
+        private TransactionTemplate tx;
+        private MemberRepositoryV2 memberRepository;
+        private MemberService memberService;
+
+        @Setup(Level.Trial)
+        public void setUp(ShopState shop) {
+            tx = new TransactionTemplate(shop.getBean(PlatformTransactionManager.class));
+            memberRepository = shop.getBean(MemberRepositoryV2.class);
+            memberService = shop.getBean(MemberService.class);
+            shop.getBean(MemberNameFilter.class).warmUp(); //DataSeeder 가 넣은 회원은 시작 후에 생겼다.
+        }
+
+        Member newMember(String prefix) {
+            Member member = new Member();
+            member.setName(prefix + "-" + sequence.incrementAndGet());
+            return member;
+        }
+    }
+
+    @Benchmark
+    public Long findByName(JoinState state) {
+        Member member = state.newMember("findByName");
+        return state.tx.execute(status -> {
+            if (!state.memberRepository.findByName(member.getName()).isEmpty()) {
+                throw new IllegalStateException("이미 존재하는 회원입니다.");
+            }
+            return state.memberRepository.save(member).getId();
+        });
+    }
+
+    @Benchmark
+    public Long existsByName(JoinState state) {
+        Member member = state.newMember("existsByName");
+        return state.tx.execute(status -> {
+            if (state.memberRepository.existsByName(member.getName())) {
+                throw new IllegalStateException("이미 존재하는 회원입니다.");
+            }
+            return state.memberRepository.save(member).getId();
+        });
+    }
+
+    @Benchmark
+    public Long join(JoinState state) {
+        return state.memberService.join(state.newMember("join"));
+    }
+}
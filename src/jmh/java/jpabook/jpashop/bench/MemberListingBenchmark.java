@@ -0,0 +1,50 @@
+package jpabook.jpashop.bench;
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.repository.MemberQueryDto;
+import jpabook.jpashop.repository.MemberRepositoryV2;
+import jpabook.jpashop.service.MemberExportService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * 회원 목록: 엔티티 조회 후 DTO 변환(V2 이전) vs 생성자 DTO 조회(V2) vs DTO 스트리밍 JSON(V3)
+ * - 할당량은 gc 프로파일러(gc.alloc.rate.norm)로 비교
+ * ./gradlew jmh -PjmhInclude=MemberListingBenchmark 에 -p members=1000000 -p orders=0 -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MemberListingBenchmark {
+
+    @Benchmark
+    public Object entities(ShopState shop) {
+        return shop.request(() -> shop.getBean(MemberRepositoryV2.class).findAll().stream()
+                .map(Member::getName)
+                .collect(toList()));
+    }
+
+    @Benchmark
+    public Object dtoProjection(ShopState shop) {
+        return shop.request(() -> shop.getBean(MemberRepositoryV2.class).findAllDtos().stream()
+                .map(MemberQueryDto::getName)
+                .collect(toList()));
+    }
+
+    @Benchmark
+    public long streamingJson(ShopState shop) {
+        return shop.request(() -> {
+            try {
+                return shop.getBean(MemberExportService.class).writeMembers(OutputStream.nullOutputStream(), 0L, 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,72 @@
+package jpabook.jpashop.bench;
+
+import jpabook.jpashop.monitoring.MethodTimerAspect;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.data.repository.Repository;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 메서드 타이머 한 번의 비용만 따로 잰다. (MetricsOverheadBenchmark 는 DB 호출의 흔들림에 묻혀 1% 차이를 가르기 어렵다)
+ * - direct: 프록시 없이 호출
+ * - proxied: 같은 JDK 프록시, 어드바이스 없음 (스프링 리포지토리 프록시 비용)
+ * - timed: 같은 프록시 + 애플리케이션의 MethodTimerAspect 와 Prometheus 레지스트리
+ * timed - proxied 가 타이머 한 번의 비용이다. 요청 하나의 비용은 이 값 * 호출된 서비스 메서드 수
+ * (예: OrderService.order 는 1번, repository-timers=true 면 6번)를 같은 요청의 지연 시간과 비교한다.
+ * ./gradlew jmh -PjmhInclude=MethodTimerAspectBenchmark 에 -p members=0 -p items=0 -p orders=0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MethodTimerAspectBenchmark {
+
+    public interface NoopRepository extends Repository<Object, Long> {
+        long next(long value);
+    }
+
+    static class NoopRepositoryImpl implements NoopRepository {
+        @Override
+        public long next(long value) {
+            return value + 1;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Targets {
+
+        NoopRepository direct;
+        NoopRepository proxied;
+        NoopRepository timed;
+
+        @Setup(Level.Trial)
+        public void setUp(ShopState shop) {
+            direct = new NoopRepositoryImpl();
+            proxied = (NoopRepository) new ProxyFactory(direct).getProxy();
+
+            ProxyFactory factory = new ProxyFactory(direct);
+            //포인트컷(기본은 서비스만)과 관계없이 타이머 비용만 보도록 advisor 가 아니라 advice 로 붙인다.
+            factory.addAdvice(shop.getBean(MethodTimerAspect.class));
+            timed = (NoopRepository) factory.getProxy();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Counter {
+        long value;
+    }
+
+    @Benchmark
+    public long direct(Targets targets, Counter counter) {
+        return counter.value = targets.direct.next(counter.value);
+    }
+
+    @Benchmark
+    public long proxied(Targets targets, Counter counter) {
+        return counter.value = targets.proxied.next(counter.value);
+    }
+
+    @Benchmark
+    public long timed(Targets targets, Counter counter) {
+        return counter.value = targets.timed.next(counter.value);
+    }
+}
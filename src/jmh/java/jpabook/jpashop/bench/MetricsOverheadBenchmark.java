@@ -0,0 +1,68 @@
+package jpabook.jpashop.bench;
+
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.MemberRepositoryV2;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.OrderService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 메트릭 비용: 같은 호출을 metrics=true(메서드 타이머 + flush 리스너, Prometheus 레지스트리) / false 로 비교
+ * - order: OrderService.order 1번 = 서비스 타이머 1개 + flush 1번 (jpashop.metrics.repository-timers=true 면 리포지토리 5개 더)
+ * - searchOrders: 주문 검색 한 페이지 (서비스 1)
+ * - findItem: ItemService.findOne 으로 2차 캐시에 있는 상품 조회 (가장 짧은 호출이라 비율로는 최악)
+ * ./gradlew jmh -PjmhInclude=MetricsOverheadBenchmark 에 -p metrics=true,false
+ * 차이가 작아서 기본 설정(fork 1, warmup 3)으로는 JIT 가 덜 끝난 값과 fork 사이 흔들림에 묻힌다. -f 3 -wi 15 -w 2s 정도로 돌리고,
+ * 타이머 한 번의 비용은 MethodTimerAspectBenchmark 로 따로 본다.
+ * order 는 같은 설정이라도 run 마다 기준값이 2배까지 달라지므로 true/false 는 한 run 안에서 비교하고, 차이가 나면 설정을 하나씩 끄고 다시 잰다.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MetricsOverheadBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Calls {
+        OrderService orderService;
+        ItemService itemService;
+        OrderSearch search;
+        Long memberId;
+        Long itemId;
+
+        @Setup(Level.Trial)
+        public void setUp(ShopState shop) {
+            orderService = shop.getBean(OrderService.class);
+            itemService = shop.getBean(ItemService.class);
+
+            memberId = shop.getBean(MemberRepositoryV2.class).findByName("member0").get(0).getId(); //DataSeeder 가 넣은 회원
+            Book book = new Book();
+            book.setName("metrics");
+            book.setPrice(1000);
+            book.setStockQuantity(1_000_000_000);
+            itemService.saveItem(book);
+            itemId = book.getId();
+
+            search = new OrderSearch();
+            search.setOrderStatus(OrderStatus.ORDER);
+        }
+    }
+
+    @Benchmark
+    public Long order(Calls c) {
+        return c.orderService.order(c.memberId, c.itemId, 1);
+    }
+
+    @Benchmark
+    public Object searchOrders(ShopState shop, Calls c) {
+        return shop.request(() -> c.orderService.searchOrders(c.search, PageRequest.of(0, 20)));
+    }
+
+    @Benchmark
+    public Object findItem(ShopState shop, Calls c) {
+        return shop.request(() -> c.itemService.findOne(c.itemId));
+    }
+}
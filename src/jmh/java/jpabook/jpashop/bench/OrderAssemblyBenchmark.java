@@ -0,0 +1,32 @@
+package jpabook.jpashop.bench;
+
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 주문 + 주문상품 DTO 조립: V4(1 + N 순차) vs V4.1(1 + N 병렬) vs V5(1 + 1)
+ * - V4.1 은 작업 스레드마다 읽기 전용 트랜잭션을 열기 때문에 쿼리 한 번의 왕복이 짧은 로컬 H2 에서는 이득이 적다.
+ *   왕복 지연이 큰 원격 DB 나 주문별 외부 호출일수록 차이가 커진다.
+ * ./gradlew jmh -PjmhInclude=OrderAssemblyBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OrderAssemblyBenchmark {
+
+    @Benchmark
+    public Object v4_sequential(ShopState shop) {
+        return shop.request(() -> shop.getBean(OrderQueryRepository.class).findOrderQueryDtos());
+    }
+
+    @Benchmark
+    public Object v4_parallel(ShopState shop) {
+        return shop.request(() -> shop.getBean(OrderQueryRepository.class).findOrderQueryDtos_parallel());
+    }
+
+    @Benchmark
+    public Object v5_optimization(ShopState shop) {
+        return shop.request(() -> shop.getBean(OrderQueryRepository.class).findAllByDto_optimization());
+    }
+}
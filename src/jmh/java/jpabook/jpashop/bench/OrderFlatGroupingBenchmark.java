@@ -0,0 +1,64 @@
+package jpabook.jpashop.bench;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.order.query.OrderFlatDto;
+import jpabook.jpashop.repository.order.query.OrderFlatGrouper;
+import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.*;
+
+/**
+ * /api/v6/orders 플랫 row 그룹핑 비교 (DB 없이 DTO 변환만 측정)
+ * - hashGrouping: 기존 방식 groupingBy (키 DTO + 결과 DTO, HashMap)
+ * - runLengthGrouping: OrderFlatGrouper (정렬 이용, 주문당 DTO 1개)
+ * ./gradlew jmh -PjmhInclude=OrderFlatGroupingBenchmark (gc 프로파일러로 할당량 비교)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OrderFlatGroupingBenchmark {
+
+    @Param({"100", "10000"})
+    int orders;
+
+    @Param({"4"})
+    int itemsPerOrder;
+
+    List<OrderFlatDto> flats;
+
+    @Setup
+    public void setUp() {
+        flats = new ArrayList<>(orders * itemsPerOrder);
+        Address address = new Address("서울", "1", "1111");
+        LocalDateTime now = LocalDateTime.now();
+        for (long orderId = 1; orderId <= orders; orderId++) {
+            for (int i = 0; i < itemsPerOrder; i++) {
+                flats.add(new OrderFlatDto(orderId, "user" + orderId, now, OrderStatus.ORDER, address, 0, 0, "item" + i, 10000, i + 1));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<OrderQueryDto> hashGrouping() {
+        return flats.stream()
+                .collect(groupingBy(o -> new OrderQueryDto(o.getOrderId(), o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress(), o.getTotalPrice(), o.getItemCount()),
+                        mapping(o -> new OrderItemQueryDto(o.getOrderId(), o.getItemName(), o.getOrderPrice(), o.getCount()), toList())
+                )).entrySet().stream()
+                .map(e -> new OrderQueryDto(e.getKey().getOrderId(), e.getKey().getName(), e.getKey().getOrderDate(), e.getKey().getOrderStatus(), e.getKey().getAddress(),
+                        e.getKey().getTotalPrice(), e.getKey().getItemCount(), e.getValue()))
+                .collect(toList());
+    }
+
+    @Benchmark
+    public List<OrderQueryDto> runLengthGrouping() {
+        return OrderFlatGrouper.group(flats);
+    }
+}
@@ -0,0 +1,65 @@
+package jpabook.jpashop.bench;
+
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 주문 검색: 기존 검색(최대 1000건, '%이름%') vs OrderRepository.search(인덱스 조건 + Slice)
+ * - 주문은 1분 간격으로 과거로 분산, 10% 는 취소 상태 (DataSeeder)
+ * - 100만 건 기준: ./gradlew jmh -PjmhInclude=OrderSearchBenchmark 에 -p orders=1000000 -p itemsPerOrder=1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OrderSearchBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Searches {
+        OrderRepository orderRepository;
+        OrderSearch legacyByName;
+        OrderSearch prefixByName;
+        OrderSearch recentOrders;
+
+        @Setup(Level.Trial)
+        public void setUp(ShopState shop) {
+            orderRepository = shop.getBean(OrderRepository.class);
+
+            legacyByName = new OrderSearch();
+            legacyByName.setMemberName("member42");
+            legacyByName.setOrderStatus(OrderStatus.ORDER);
+
+            prefixByName = new OrderSearch();
+            prefixByName.setMemberName("member42");
+            prefixByName.setOrderStatus(OrderStatus.ORDER);
+
+            recentOrders = new OrderSearch();
+            recentOrders.setOrderStatus(OrderStatus.ORDER);
+            recentOrders.setOrderDateFrom(LocalDateTime.now().minusHours(1));
+        }
+    }
+
+    @Benchmark
+    public Object legacy_string(ShopState shop, Searches s) {
+        return shop.request(() -> s.orderRepository.findAllByString(s.legacyByName));
+    }
+
+    @Benchmark
+    public Object legacy_criteriaContains(ShopState shop, Searches s) {
+        return shop.request(() -> s.orderRepository.findAllByCriteria(s.legacyByName));
+    }
+
+    @Benchmark
+    public Object search_namePrefix(ShopState shop, Searches s) {
+        return shop.request(() -> s.orderRepository.search(s.prefixByName, PageRequest.of(0, 20)));
+    }
+
+    @Benchmark
+    public Object search_statusDateRange(ShopState shop, Searches s) {
+        return shop.request(() -> s.orderRepository.search(s.recentOrders, PageRequest.of(0, 20)));
+    }
+}
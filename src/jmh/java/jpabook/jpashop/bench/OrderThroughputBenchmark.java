@@ -0,0 +1,63 @@
+package jpabook.jpashop.bench;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderBatchService;
+import jpabook.jpashop.service.OrderService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 같은 상품에 동시 주문: 초당 주문 수
+ * - order: 주문마다 트랜잭션 하나 (OrderService.order)
+ * - batchedOrder: 동시에 들어온 주문을 트랜잭션 하나로 커밋 (OrderBatchService.order)
+ * 스레드 수를 바꿔 가며 비교한다. (묶음 접수는 동시 주문이 많을수록 유리)
+ * ./gradlew jmh -PjmhInclude=OrderThroughputBenchmark 에 -p orders=0, 스레드 수는 jmh jar 를 직접 실행할 때 -t 1,2,4,8,32 중 하나
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class OrderThroughputBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class OrderState {
+
+        OrderService orderService;
+        OrderBatchService orderBatchService;
+        Long memberId;
+        Long itemId;
+
+        @Setup(Level.Trial)
+        public void setUp(ShopState shop) {
+            orderService = shop.getBean(OrderService.class);
+            orderBatchService = shop.getBean(OrderBatchService.class);
+
+            Member member = new Member();
+            member.setName("처리량-" + System.nanoTime());
+            member.setAddress(new Address("서울", "강가", "123-123"));
+            memberId = shop.getBean(MemberService.class).join(member);
+
+            //재고 부족 없이 주문만 잰다.
+            Book book = new Book();
+            book.setName("인기 도서");
+            book.setPrice(10000);
+            book.setStockQuantity(Integer.MAX_VALUE);
+            shop.getBean(ItemService.class).saveItem(book);
+            itemId = book.getId();
+        }
+    }
+
+    @Benchmark
+    public Long order(OrderState state) {
+        return state.orderService.order(state.memberId, state.itemId, 1);
+    }
+
+    @Benchmark
+    public Long batchedOrder(OrderState state) {
+        return state.orderBatchService.order(state.memberId, state.itemId, 1);
+    }
+}
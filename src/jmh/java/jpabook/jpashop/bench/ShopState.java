@@ -0,0 +1,90 @@
+package jpabook.jpashop.bench;
+
+import jpabook.jpashop.JpashopApplication;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 벤치마크용 스프링 컨텍스트 + H2 데이터
+ * - 회원/상품/주문 수는 @Param 으로 조절 (./gradlew jmh 실행 시 -p orders=100000 등)
+ * - 요청 하나를 읽기 전용 트랜잭션 하나로 흉내낸다. (OSIV 끔)
+ * - Hibernate 통계로 호출 1번당 SQL 수를 계산해서 trial 종료 시 출력한다.
+ * - metrics=false 면 메서드 타이머/영속성 컨텍스트 메트릭을 끈다. (MetricsOverheadBenchmark)
+ */
+@State(Scope.Benchmark)
+public class ShopState {
+
+    @Param({"100"})
+    public int members;
+
+    @Param({"100"})
+    public int items;
+
+    @Param({"1000"})
+    public int orders;
+
+    @Param({"3"})
+    public int itemsPerOrder;
+
+    @Param({"true"})
+    public boolean metrics;
+
+    private ConfigurableApplicationContext context;
+    private TransactionTemplate readOnlyTx;
+    private Statistics statistics;
+
+    private final LongAdder invocations = new LongAdder();
+    private long statementsAtStart;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(JpashopApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.jpa.open-in-view=false",
+                        "--spring.jpa.properties.hibernate.generate_statistics=true",
+                        "--logging.level.org.hibernate.SQL=warn",
+                        "--spring.main.banner-mode=off",
+                        "--jpashop.metrics.method-timers=" + metrics,
+                        "--jpashop.metrics.persistence-context=" + metrics);
+
+        EntityManagerFactory emf = context.getBean(EntityManagerFactory.class);
+        new DataSeeder(emf).seed(members, items, orders, itemsPerOrder);
+
+        readOnlyTx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTx.setReadOnly(true);
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statementsAtStart = statistics.getPrepareStatementCount();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        long statements = statistics.getPrepareStatementCount() - statementsAtStart;
+        long calls = invocations.sum();
+        if (calls > 0) {
+            System.out.printf("%n[sql] %.2f statements/op (%d statements, %d ops)%n", (double) statements / calls, statements, calls);
+        }
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * 요청 하나 = 읽기 전용 트랜잭션 하나
+     */
+    public <T> T request(Supplier<T> work) {
+        invocations.increment();
+        return readOnlyTx.execute(status -> work.get());
+    }
+}
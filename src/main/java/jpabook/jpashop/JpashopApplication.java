@@ -1,10 +1,14 @@
 package jpabook.jpashop;
 
 import com.fasterxml.jackson.datatype.hibernate5.Hibernate5Module;
+import org.hibernate.cfg.AvailableSettings;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+@EnableScheduling
 @SpringBootApplication
 public class JpashopApplication {
 
@@ -18,4 +22,12 @@ public class JpashopApplication {
 		//강제 지연 로딩 설정
 		hibernate5Module.configure(Hibernate5Module.Feature.FORCE_LAZY_LOADING, true);
 		return hibernate5Module;
-	}}
+	}
+
+	@Bean
+	HibernatePropertiesCustomizer enhancementAsProxyCustomizer() {
+		//바이트코드 향상된 엔티티(build.gradle 의 hibernate.enhance)도 지연 로딩 연관관계는 id 만 가진 프록시로 둔다.
+		//끄면 지연 로딩 연관관계 하나를 읽을 때 그 엔티티의 지연 로딩 연관관계를 모두 읽는다.
+		return properties -> properties.put(AvailableSettings.ALLOW_ENHANCEMENT_AS_PROXY, true);
+	}
+}
@@ -0,0 +1,94 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.category.CategoryTree;
+import jpabook.jpashop.service.CategoryService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+@RestController
+@RequiredArgsConstructor
+public class CategoryApiController {
+
+    private final CategoryService categoryService;
+
+    /**
+     * 카테고리 전체 트리 (메모리 캐시, 쿼리 없음)
+     * version 이 같으면 트리도 같다.
+     */
+    @GetMapping("/api/categories")
+    public CategoryTree categories() {
+        return categoryService.getTree();
+    }
+
+    @PostMapping("/api/categories")
+    public CreateCategoryResponse saveCategory(@RequestBody @Valid CreateCategoryRequest request) {
+        Long id = categoryService.addCategory(request.getName(), request.getParentId());
+        return new CreateCategoryResponse(id);
+    }
+
+    @PutMapping("/api/categories/{id}/parent")
+    public void moveCategory(@PathVariable("id") Long id, @RequestBody MoveCategoryRequest request) {
+        categoryService.moveCategory(id, request.getParentId());
+    }
+
+    /**
+     * 하위 카테고리를 포함한 상품 목록
+     */
+    @GetMapping("/api/categories/{id}/items")
+    public Result<List<CategoryItemDto>> categoryItems(@PathVariable("id") Long id,
+                                                       @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                       @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        List<CategoryItemDto> items = categoryService.findItems(id, offset, limit).stream()
+                .map(CategoryItemDto::new)
+                .collect(toList());
+        return new Result<>(items);
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Result<T> {
+        private T data;
+    }
+
+    @Data
+    static class CreateCategoryRequest {
+        @NotEmpty
+        private String name;
+        private Long parentId; //없으면 최상위
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CreateCategoryResponse {
+        private Long id;
+    }
+
+    @Data
+    static class MoveCategoryRequest {
+        private Long parentId; //없으면 최상위
+    }
+
+    @Data
+    static class CategoryItemDto {
+        private Long itemId;
+        private String name;
+        private int price;
+        private int stockQuantity;
+
+        public CategoryItemDto(Item item) {
+            itemId = item.getId();
+            name = item.getName();
+            price = item.getPrice();
+            stockQuantity = item.getStockQuantity();
+        }
+    }
+}
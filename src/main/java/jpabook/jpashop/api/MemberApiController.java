@@ -1,13 +1,28 @@
 package jpabook.jpashop.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.repository.MemberQueryDto;
+import jpabook.jpashop.service.MemberExportService;
+import jpabook.jpashop.service.MemberImportRow;
+import jpabook.jpashop.service.MemberImportService;
+import jpabook.jpashop.service.MemberImportService.ImportResult;
 import jpabook.jpashop.service.MemberService;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -16,6 +31,9 @@ import java.util.stream.Collectors;
 public class MemberApiController {
 
     private final MemberService memberService;
+    private final MemberExportService memberExportService;
+    private final MemberImportService memberImportService;
+    private final ObjectMapper objectMapper;
 
     /**
      * 등록 V1: 요청 값으로 Member 엔티티를 직접 받는다.
@@ -43,6 +61,25 @@ public class MemberApiController {
         return new CreateMemberResponse(id);
     }
 
+    /**
+     * 일괄 등록: JSON 배열 [{"name":..,"city":..,"street":..,"zipcode":..}, ...]
+     * - 본문을 한 건씩 읽으면서 청크 단위로 검증/저장한다. (본문 전체를 메모리에 올리지 않는다)
+     * - 실패한 row 는 행 번호(1부터)와 사유를 errors 로 돌려준다.
+     */
+    @PostMapping(value = "/api/v2/members/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ImportResult importMembersJson(InputStream body) throws IOException {
+        return memberImportService.importMembers(objectMapper.readerFor(MemberImportRow.class).readValues(body));
+    }
+
+    /**
+     * 일괄 등록: CSV (name,city,street,zipcode, 헤더 선택, UTF-8)
+     */
+    @PostMapping(value = "/api/v2/members/import", consumes = "text/csv")
+    public ImportResult importMembersCsv(InputStream body) {
+        return memberImportService.importMembers(new MemberCsvReader(
+                new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))));
+    }
+
     /**
      * 수정 API
      */
@@ -73,12 +110,13 @@ public class MemberApiController {
 
     /**
      * 조회 V2: 응답 값으로 엔티티가 아닌 별도의 DTO를 반환한다.
+     * - 엔티티 대신 필요한 컬럼(id, name)만 DTO 로 조회한다.
      */
     @GetMapping("/api/v2/members")
     public Result membersV2() {
 
-        List<Member> findMembers = memberService.findMembers();
-        //엔티티 -> DTO 변환
+        List<MemberQueryDto> findMembers = memberService.findMemberDtos();
+        //조회 DTO -> API DTO 변환
         List<MemberDto> collect = findMembers.stream()
                 .map(m -> new MemberDto(m.getName()))
                 .collect(Collectors.toList());
@@ -86,6 +124,28 @@ public class MemberApiController {
         return new Result(collect);
     }
 
+    /**
+     * 조회 V3: 필요한 컬럼만 조회하고 JSON 을 한 건씩 바로 응답에 쓴다. (List, 엔티티를 만들지 않는다)
+     * - lastId 다음 회원부터 limit 건 (limit 이 없으면 끝까지), 더 있을 수 있으면 nextLastId
+     * - 음수 lastId, 범위(0 ~ MemberExportService.MAX_LIMIT)를 벗어난 limit 은 400
+     */
+    @GetMapping("/api/v3/members")
+    public void membersV3(@RequestParam(value = "lastId", defaultValue = "0") Long lastId,
+                          @RequestParam(value = "limit", defaultValue = "0") int limit,
+                          HttpServletResponse response) throws IOException {
+        //응답을 쓰기 시작한 뒤에는 상태 코드를 바꿀 수 없으므로 먼저 검증한다.
+        if (lastId < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "lastId 는 0 이상이어야 합니다.");
+        }
+        if (limit < 0 || limit > MemberExportService.MAX_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit 은 0(끝까지) 또는 1 ~ " + MemberExportService.MAX_LIMIT + " 이어야 합니다.");
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        memberExportService.writeMembers(response.getOutputStream(), lastId, limit);
+    }
+
     @Data
     @AllArgsConstructor
     static class Result<T> {
@@ -0,0 +1,106 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.service.MemberImportRow;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 회원 일괄 등록 CSV 를 한 줄씩 읽는다. (전체를 메모리에 올리지 않는다)
+ * - 열 순서: name,city,street,zipcode (주소 열은 생략 가능)
+ * - 첫 줄이 name 으로 시작하면 헤더로 보고 건너뛴다. 빈 줄도 건너뛴다.
+ * - 값에 쉼표나 따옴표가 있으면 "..." 로 감싸고 따옴표는 "" 로 쓴다. (한 값이 여러 줄에 걸치는 것은 지원하지 않는다)
+ */
+class MemberCsvReader implements Iterator<MemberImportRow> {
+
+    private final BufferedReader reader;
+    private boolean first = true;
+    private MemberImportRow next;
+
+    MemberCsvReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = read();
+        }
+        return next != null;
+    }
+
+    @Override
+    public MemberImportRow next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        MemberImportRow row = next;
+        next = null;
+        return row;
+    }
+
+    private MemberImportRow read() {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                List<String> fields = split(line);
+                if (first) {
+                    first = false;
+                    if ("name".equalsIgnoreCase(fields.get(0).trim())) {
+                        continue;
+                    }
+                }
+                return new MemberImportRow(field(fields, 0), field(fields, 1), field(fields, 2), field(fields, 3));
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String field(List<String> fields, int index) {
+        if (index >= fields.size() || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("따옴표가 닫히지 않았습니다: " + line);
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
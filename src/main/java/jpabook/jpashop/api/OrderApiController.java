@@ -4,22 +4,38 @@ import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderItem;
 import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.OrderSearch;
 import jpabook.jpashop.repository.order.OrderRepositoryV2;
 import jpabook.jpashop.repository.order.query.OrderFlatDto;
-import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
+import jpabook.jpashop.repository.order.query.OrderFlatGrouper;
+import jpabook.jpashop.repository.order.query.OrderFlatPage;
 import jpabook.jpashop.repository.order.query.OrderQueryDto;
 import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.service.OrderBulkCancelService;
+import jpabook.jpashop.service.OrderBulkCancelService.BulkCancelResult;
+import jpabook.jpashop.service.OrderExportService;
+import jpabook.jpashop.service.OrderService;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-import static java.util.stream.Collectors.*;
+import static java.util.stream.Collectors.toList;
 
 
 /**
@@ -32,20 +48,49 @@ import static java.util.stream.Collectors.*;
  * - 트랜잭션 안에서 지연 로딩 필요
  * V3. 엔티티를 조회해서 DTO로 변환(fetch join 사용O)
  * - 페이징 시에는 N 부분을 포기해야함(대신에 batch fetch size? 옵션 주면 N -> 1 쿼리로 변경 가능)
+ * V3.2 V3.1 + 키셋(커서) 페이징
+ * - order_id 기준으로 seek 하므로 페이지가 깊어져도 비용이 일정하다.
  * <p>
  * V4. JPA에서 DTO로 바로 조회, 컬렉션 N 조회 (1 + N Query)
  * - 페이징 가능
+ * - V4.1: N 번의 컬렉션 조회를 별도 커넥션에서 동시에 실행 (쿼리 수는 같고 지연 시간만 줄어든다)
  * V5. JPA에서 DTO로 바로 조회, 컬렉션 1 조회 최적화 버전 (1 + 1 Query)
  * - 페이징 가능
  * V6. JPA에서 DTO로 바로 조회, 플랫 데이터(1Query) (1 Query)
- * - 페이징 불가능...
+ * - 페이징 불가능... -> V6.1: 주문 id 범위를 먼저 구해서 주문 수 기준으로 페이징 (2 Query)
+ * V7. V6 + 커서 스트리밍(NDJSON)
+ * - 전체 내보내기용, 주문 수와 관계없이 메모리 사용량 일정
+ * <p>
+ * 등록. 장바구니 주문 (주문 1건 + 주문상품 N건, 트랜잭션 1번)
+ * 일괄 취소. 주문 id 목록 또는 회원 이름 조건으로 청크 단위 집합 연산 취소
  */
 @RestController
 @RequiredArgsConstructor
 public class OrderApiController {
 
+	private static final int MAX_CURSOR_LIMIT = 1000; //커서 페이징 한 번에 조회할 수 있는 최대 주문 수
+
 	private final OrderRepositoryV2 orderRepository;
 	private final OrderQueryRepository orderQueryRepository;
+	private final OrderExportService orderExportService;
+	private final OrderService orderService;
+	private final OrderBulkCancelService orderBulkCancelService;
+
+	/**
+	 * 장바구니 주문
+	 * - 상품마다 주문을 따로 만들면 상품 20개에 트랜잭션 20번, 배송/주문 row 20개씩 생긴다.
+	 * - 같은 상품이 여러 번 들어오면 수량을 합친다.
+	 */
+	@PostMapping("/api/v1/orders")
+	public CreateOrderResponse checkout(@RequestBody @Valid CheckoutRequest request) {
+		Map<Long, Integer> itemCounts = new LinkedHashMap<>();
+		for (CartItem cartItem : request.getItems()) {
+			itemCounts.merge(cartItem.getItemId(), cartItem.getCount(), Integer::sum);
+		}
+
+		Long id = orderService.checkout(request.getMemberId(), itemCounts);
+		return new CreateOrderResponse(id);
+	}
 
 	/**
 	 * V1. 엔티티 직접 노출
@@ -101,26 +146,142 @@ public class OrderApiController {
 		return result;
 	}
 
+	/**
+	 * V3.2 키셋(커서) 페이징
+	 * - offset 페이징은 앞 페이지의 row 를 모두 읽고 버리므로 깊은 페이지일수록 느려진다.
+	 * - 마지막 order_id 이후부터 PK 로 바로 찾아 읽으므로 10,000 번째 페이지도 첫 페이지와 비용이 같다.
+	 * - 응답의 nextCursor 를 다음 요청의 cursor 로 넘긴다. (마지막 페이지면 null)
+	 * - 잘못된 cursor, 범위(1 ~ MAX_CURSOR_LIMIT)를 벗어난 limit 은 400
+	 */
+	@GetMapping("/api/v3.2/orders")
+	public CursorResult<List<OrderDto>> ordersV3_cursor(@RequestParam(value = "cursor", required = false) String cursor,
+														@RequestParam(value = "limit", defaultValue = "100") int limit) {
+		Slice<Order> orders = orderRepository.findAllWithMemberDeliveryAfter(decodeCursor(cursor), PageRequest.of(0, checkLimit(limit)));
+
+		List<OrderDto> result = orders.stream()
+				.map(o -> new OrderDto(o))
+				.collect(toList());
+
+		String nextCursor = orders.hasNext() ? OrderCursor.encode(result.get(result.size() - 1).getOrderId()) : null;
+		return new CursorResult<>(result, nextCursor);
+	}
+
 	@GetMapping("/api/v4/orders")
 	public List<OrderQueryDto> ordersV4() {
 		return orderQueryRepository.findOrderQueryDtos();
 	}
 
+	@GetMapping("/api/v4.1/orders")
+	public List<OrderQueryDto> ordersV4_parallel() {
+		return orderQueryRepository.findOrderQueryDtos_parallel();
+	}
+
 	@GetMapping("/api/v5/orders")
 	public List<OrderQueryDto> ordersV5() {
 		return orderQueryRepository.findAllByDto_optimization();
 	}
 
+	/**
+	 * V6. 플랫 데이터를 order_id 순서대로 한 번만 훑으면서 주문 단위로 묶는다.
+	 * - groupingBy(HashMap) 대신 OrderFlatGrouper 사용: 주문당 DTO 1개, 정렬 순서 유지
+	 */
 	@GetMapping("/api/v6/orders")
 	public List<OrderQueryDto> ordersV6() {
 		List<OrderFlatDto> flats = orderQueryRepository.findAllByDto_flat();
 
-		return flats.stream()
-				.collect(groupingBy(o -> new OrderQueryDto(o.getOrderId(), o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress()),
-						mapping(o -> new OrderItemQueryDto(o.getOrderId(), o.getItemName(), o.getOrderPrice(), o.getCount()), toList())
-				)).entrySet().stream()
-				.map(e -> new OrderQueryDto(e.getKey().getOrderId(), e.getKey().getName(), e.getKey().getOrderDate(), e.getKey().getOrderStatus(), e.getKey().getAddress(), e.getValue()))
-				.collect(toList());
+		return OrderFlatGrouper.group(flats);
+	}
+
+	/**
+	 * V6.1 플랫 데이터 + 주문 수 기준 키셋 페이징
+	 * - limit 은 row 수가 아니라 주문 수
+	 */
+	@GetMapping("/api/v6.1/orders")
+	public CursorResult<List<OrderQueryDto>> ordersV6_page(@RequestParam(value = "cursor", required = false) String cursor,
+														   @RequestParam(value = "limit", defaultValue = "100") int limit) {
+		OrderFlatPage page = orderQueryRepository.findAllByDto_flat(decodeCursor(cursor), checkLimit(limit));
+
+		List<OrderQueryDto> result = OrderFlatGrouper.group(page.getFlats());
+
+		//주문상품이 없는 주문은 result 에서 빠지므로 id 페이지 기준으로 다음 커서를 정한다.
+		String nextCursor = page.isLast() ? null : OrderCursor.encode(page.getLastOrderId());
+		return new CursorResult<>(result, nextCursor);
+	}
+
+	/**
+	 * V7. 주문 전체 내보내기 (NDJSON 스트리밍)
+	 * - List 로 모으지 않고 커서에서 읽은 주문을 한 줄씩 바로 응답에 쓴다.
+	 */
+	@GetMapping("/api/v7/orders")
+	public void ordersV7(HttpServletResponse response) throws IOException {
+		response.setContentType("application/x-ndjson");
+		response.setCharacterEncoding("UTF-8");
+		orderExportService.exportOrders(response.getOutputStream());
+	}
+
+	/**
+	 * 일괄 취소
+	 * - orderIds 가 있으면 해당 주문, 없으면 memberName 조건에 맞는 주문 전체
+	 * - 배송완료/이미 취소된 주문은 건너뛰고 skipped 로 센다.
+	 */
+	@PostMapping("/api/v1/orders/cancel")
+	public BulkCancelResult cancelOrders(@RequestBody BulkCancelRequest request) {
+		if (request.getOrderIds() != null) {
+			return orderBulkCancelService.cancelOrders(request.getOrderIds());
+		}
+		OrderSearch orderSearch = new OrderSearch();
+		orderSearch.setMemberName(request.getMemberName());
+		return orderBulkCancelService.cancelOrders(orderSearch);
+	}
+
+	@Data
+	static class BulkCancelRequest {
+		private List<Long> orderIds;
+		private String memberName;
+	}
+
+	private static Long decodeCursor(String cursor) {
+		try {
+			return OrderCursor.decode(cursor);
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+		}
+	}
+
+	private static int checkLimit(int limit) {
+		if (limit < 1 || limit > MAX_CURSOR_LIMIT) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit 은 1 ~ " + MAX_CURSOR_LIMIT + " 이어야 합니다.");
+		}
+		return limit;
+	}
+
+	@Data
+	static class CheckoutRequest {
+		@NotNull
+		private Long memberId;
+		@NotEmpty
+		private List<@Valid CartItem> items;
+	}
+
+	@Data
+	static class CartItem {
+		@NotNull
+		private Long itemId;
+		@Positive
+		private int count;
+	}
+
+	@Data
+	@AllArgsConstructor
+	static class CreateOrderResponse {
+		private Long id;
+	}
+
+	@Data
+	@AllArgsConstructor
+	static class CursorResult<T> {
+		private T data;
+		private String nextCursor;
 	}
 
 	@Data
@@ -0,0 +1,37 @@
+package jpabook.jpashop.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 키셋 페이징용 커서
+ * - 클라이언트에게는 마지막으로 읽은 order_id 를 감싼 불투명 토큰으로만 노출한다.
+ * - 토큰이 없으면 처음부터 조회한다.
+ */
+public final class OrderCursor {
+
+    private static final String PREFIX = "order:";
+
+    private OrderCursor() {
+    }
+
+    public static String encode(Long lastOrderId) {
+        String raw = PREFIX + lastOrderId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith(PREFIX)) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return Long.valueOf(raw.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.journal.OrderJournalService;
+import jpabook.jpashop.journal.OrderJournalStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+
+/**
+ * 쓰기 지연 주문 (jpashop.order-journal.enabled=true 일 때만)
+ * - 등록: 저널에 기록되면 202 와 순번을 돌려준다. 주문 id 는 반영된 뒤 상태 조회로 얻는다.
+ * - 상태: PENDING -> APPLIED(주문 id) 또는 REJECTED(사유)
+ */
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "jpashop.order-journal", name = "enabled", havingValue = "true")
+public class OrderJournalApiController {
+
+    private final OrderJournalService orderJournalService;
+
+    @PostMapping("/api/journal/orders")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public SubmitOrderResponse submit(@RequestBody @Valid SubmitOrderRequest request) {
+        long seq = orderJournalService.submit(request.getMemberId(), request.getItemId(), request.getCount());
+        return new SubmitOrderResponse(seq);
+    }
+
+    @GetMapping("/api/journal/orders/{seq}")
+    public OrderJournalStatus status(@PathVariable("seq") long seq) {
+        return orderJournalService.status(seq);
+    }
+
+    @Data
+    static class SubmitOrderRequest {
+        @NotNull
+        private Long memberId;
+        @NotNull
+        private Long itemId;
+        @Positive
+        private int count;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class SubmitOrderResponse {
+        private long seq;
+    }
+}
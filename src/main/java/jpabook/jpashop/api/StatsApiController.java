@@ -0,0 +1,68 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.repository.stats.DailySalesDto;
+import jpabook.jpashop.repository.stats.ItemSalesDto;
+import jpabook.jpashop.repository.stats.MemberSalesDto;
+import jpabook.jpashop.repository.stats.SalesRollupRepository;
+import jpabook.jpashop.service.SalesRollupService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 매출 대시보드 API
+ * 집계 테이블(SalesRollupService 가 유지)만 읽는다. 주문 테이블을 GROUP BY 하지 않으므로 주문 이력이 커져도 응답 시간이 일정하다.
+ * 기간을 지정하지 않으면 오늘까지 최근 30일
+ */
+@RestController
+@RequiredArgsConstructor
+public class StatsApiController {
+
+    private static final int DEFAULT_DAYS = 30;
+
+    private final SalesRollupRepository salesRollupRepository;
+    private final SalesRollupService salesRollupService;
+
+    @GetMapping("/api/stats/daily")
+    public Result<List<DailySalesDto>> dailySales(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(DEFAULT_DAYS - 1);
+        return new Result<>(salesRollupRepository.findDailySales(start, end));
+    }
+
+    @GetMapping("/api/stats/items")
+    public Result<List<ItemSalesDto>> topItems(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(DEFAULT_DAYS - 1);
+        return new Result<>(salesRollupRepository.findTopItems(start, end, limit));
+    }
+
+    @GetMapping("/api/stats/members")
+    public Result<List<MemberSalesDto>> topMembers(@RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return new Result<>(salesRollupRepository.findTopMembers(limit));
+    }
+
+    /**
+     * 집계를 주문 테이블에서 다시 계산 (운영 복구용)
+     */
+    @PostMapping("/api/stats/rebuild")
+    public void rebuild() {
+        salesRollupService.rebuild();
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Result<T> {
+        private T data;
+    }
+}
@@ -7,6 +7,7 @@ import lombok.Setter;
 public class BookForm {
 
     private Long id;
+    private Long version; //수정 화면을 만들 때의 상품 버전
 
     private String name;
     private int price;
@@ -2,10 +2,12 @@ package jpabook.jpashop.controller;
 
 import jpabook.jpashop.domain.item.Book;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.StaleVersionException;
 import jpabook.jpashop.service.ItemService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -52,6 +54,7 @@ public class ItemController {
 
         BookForm form = new BookForm();
         form.setId(item.getId());
+        form.setVersion(item.getVersion());
         form.setName(item.getName());
         form.setPrice(item.getPrice());
         form.setStockQuantity(item.getStockQuantity());
@@ -63,9 +66,17 @@ public class ItemController {
     }
 
     @PostMapping("items/{itemId}/edit")
-    public String updateItem(@PathVariable Long itemId, @ModelAttribute("form") BookForm form) {
-
-        itemService.updateItem(itemId, form.getName(), form.getPrice(), form.getStockQuantity());
+    public String updateItem(@PathVariable Long itemId, @ModelAttribute("form") BookForm form, BindingResult result) {
+
+        try {
+            itemService.updateItem(itemId, form.getVersion(), form.getName(), form.getPrice(), form.getStockQuantity());
+        } catch (StaleVersionException e) {
+            //입력한 값은 그대로 두고 버전만 최신으로 바꿔서 다시 보여준다. (현재 재고를 보고 다시 제출)
+            Item item = itemService.findOne(itemId);
+            form.setVersion(item.getVersion());
+            result.reject("stale", e.getMessage() + " (현재 재고: " + item.getStockQuantity() + ")");
+            return "items/updateItemForm";
+        }
 
         return "redirect:/items";
     }
@@ -6,8 +6,11 @@ import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.repository.OrderSearch;
 import jpabook.jpashop.service.ItemService;
 import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderBatchService;
 import jpabook.jpashop.service.OrderService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -19,6 +22,7 @@ import java.util.List;
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderBatchService orderBatchService;
     private final MemberService memberService;
     private final ItemService itemService;
 
@@ -34,19 +38,26 @@ public class OrderController {
         return "order/orderForm";
     }
 
+    /**
+     * 동시에 몰린 주문은 묶어서 트랜잭션 하나로 처리한다. (OrderBatchService)
+     */
     @PostMapping("/order")
     public String order(@RequestParam("memberId") Long memberId,
                         @RequestParam("itemId") Long itemId,
                         @RequestParam("count") int count) {
 
-        orderService.order(memberId, itemId, count);
+        orderBatchService.order(memberId, itemId, count);
         return "redirect:/orders";
     }
 
     @GetMapping("/orders")
-    public String orderList(@ModelAttribute("orderSearch") OrderSearch orderSearch, Model model) {
-        List<Order> orders = orderService.findOrders(orderSearch);
-        model.addAttribute("orders", orders);
+    public String orderList(@ModelAttribute("orderSearch") OrderSearch orderSearch,
+                            @RequestParam(value = "page", defaultValue = "0") int page,
+                            Model model) {
+        Slice<Order> orders = orderService.searchOrders(orderSearch, PageRequest.of(page, 20));
+        model.addAttribute("orders", orders.getContent());
+        model.addAttribute("page", page);
+        model.addAttribute("hasNext", orders.hasNext());
 
         return "order/orderList";
     }
@@ -0,0 +1,87 @@
+package jpabook.jpashop.datasource;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+
+/**
+ * 쓰기 직후 읽기(read-your-writes) 보장
+ * 복제 DB 는 주 DB 보다 늦을 수 있으므로 쓰기를 커밋한 클라이언트의 읽기는 window 동안 주 DB 로 보낸다.
+ * - 같은 요청 안: 요청 속성에 마지막 쓰기 시각을 기록
+ * - 다음 요청: 쿠키로 마지막 쓰기 시각을 주고받는다. (세션 없이 여러 노드에서 동작)
+ * HTTP 요청 밖(배치, 스케줄러)에서는 기록하지 않는다. 그런 작업의 읽기는 쓰기 트랜잭션 안에서 하면 주 DB 로 간다.
+ * 요청을 받아 다른 스레드에서 커밋하는 쓰기(묶음 주문)는 요청 스레드가 결과를 받은 뒤 wrote() 를 호출해야 한다.
+ */
+public class ReadYourWrites {
+
+    static final String COOKIE_NAME = "jpashop-last-write";
+    private static final String ATTRIBUTE_NAME = ReadYourWrites.class.getName() + ".lastWrite";
+
+    private final long windowMillis;
+
+    public ReadYourWrites(Duration window) {
+        this.windowMillis = window.toMillis();
+    }
+
+    /**
+     * 현재 클라이언트가 window 안에 쓰기를 커밋했는지
+     */
+    public boolean isPrimaryRequired() {
+        ServletRequestAttributes attributes = currentRequest();
+        if (attributes == null) {
+            return false;
+        }
+        Long lastWrite = (Long) attributes.getAttribute(ATTRIBUTE_NAME, RequestAttributes.SCOPE_REQUEST);
+        if (lastWrite == null) {
+            lastWrite = readCookie(attributes);
+            attributes.setAttribute(ATTRIBUTE_NAME, lastWrite, RequestAttributes.SCOPE_REQUEST);
+        }
+        return System.currentTimeMillis() - lastWrite < windowMillis;
+    }
+
+    /**
+     * 쓰기 트랜잭션 커밋 후 호출 (요청 스레드에서)
+     */
+    public void wrote() {
+        ServletRequestAttributes attributes = currentRequest();
+        if (attributes == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        attributes.setAttribute(ATTRIBUTE_NAME, now, RequestAttributes.SCOPE_REQUEST);
+
+        HttpServletResponse response = attributes.getResponse();
+        if (response != null && !response.isCommitted()) {
+            Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(now));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, windowMillis / 1000));
+            response.addCookie(cookie);
+        }
+    }
+
+    private static ServletRequestAttributes currentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes ? (ServletRequestAttributes) attributes : null;
+    }
+
+    private static long readCookie(ServletRequestAttributes attributes) {
+        Cookie[] cookies = attributes.getRequest().getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (COOKIE_NAME.equals(cookie.getName())) {
+                    try {
+                        return Long.parseLong(cookie.getValue());
+                    } catch (NumberFormatException e) {
+                        return 0L;
+                    }
+                }
+            }
+        }
+        return 0L;
+    }
+}
@@ -0,0 +1,90 @@
+package jpabook.jpashop.datasource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 주 DB + 복제 DB 구성 (jpashop.datasource.replica.enabled=true 일 때만)
+ * - 주 DB 는 기존 spring.datasource.hikari 설정을 그대로 쓴다.
+ * - 애플리케이션 DataSource 는 ReplicaRoutingDataSource 하나이고 JPA, CountingDataSource 는 이것을 쓴다.
+ *   (DataSource 빈이 둘 이상이면 DataSource 초기화와 순환 참조가 생긴다)
+ * - 풀을 직접 만들기 때문에 hikaricp.* 메트릭(pool 태그)도 직접 연결한다. (자동 설정은 라우팅 대상 중 주 DB 풀만 찾는다)
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "jpashop.datasource.replica", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariConfig primaryHikariConfig() {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("primary");
+        return config;
+    }
+
+    //다른 스레드가 대신 커밋하는 쓰기(OrderBatchService)는 요청 스레드가 직접 기록한다.
+    @Bean
+    public ReadYourWrites readYourWrites(ReplicaProperties properties) {
+        return new ReadYourWrites(properties.getReadYourWritesWindow());
+    }
+
+    @Bean
+    public DataSource dataSource(@Qualifier("primaryHikariConfig") HikariConfig primaryHikariConfig,
+                                 ReplicaProperties properties,
+                                 ReadYourWrites readYourWrites,
+                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            primaryHikariConfig.setMetricRegistry(registry);
+        }
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        List<HikariConfig> instances = properties.getInstances();
+        for (int i = 0; i < instances.size(); i++) {
+            HikariConfig config = instances.get(i);
+            if (config.getPoolName() == null) {
+                config.setPoolName("replica-" + (i + 1));
+            }
+            if (registry != null) {
+                config.setMetricRegistry(registry);
+            }
+            replicas.put(config.getPoolName(), new HikariDataSource(config));
+        }
+        return new ReplicaRoutingDataSource(new HikariDataSource(primaryHikariConfig), replicas, readYourWrites);
+    }
+
+    @Bean
+    public ReplicaHealthChecker replicaHealthChecker(DataSource dataSource) throws SQLException {
+        //CountingDataSource 로 감싸져 있을 수 있다.
+        return new ReplicaHealthChecker(dataSource.unwrap(ReplicaRoutingDataSource.class));
+    }
+
+    static class ReplicaHealthChecker {
+
+        private final ReplicaRoutingDataSource replicaRoutingDataSource;
+
+        ReplicaHealthChecker(ReplicaRoutingDataSource replicaRoutingDataSource) {
+            this.replicaRoutingDataSource = replicaRoutingDataSource;
+        }
+
+        @Scheduled(fixedDelayString = "${jpashop.datasource.replica.health-check-interval-ms:5000}")
+        public void check() {
+            replicaRoutingDataSource.checkReplicas();
+        }
+    }
+}
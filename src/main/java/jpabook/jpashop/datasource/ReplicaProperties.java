@@ -0,0 +1,23 @@
+package jpabook.jpashop.datasource;
+
+import com.zaxxer.hikari.HikariConfig;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * jpashop.datasource.replica.*
+ * instances 는 spring.datasource.hikari 와 같은 키(jdbc-url, username, maximum-pool-size ...)를 쓴다.
+ */
+@Getter @Setter
+@ConfigurationProperties("jpashop.datasource.replica")
+public class ReplicaProperties {
+
+    private boolean enabled;
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+    private List<HikariConfig> instances = new ArrayList<>();
+}
@@ -0,0 +1,182 @@
+package jpabook.jpashop.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 읽기 전용 트랜잭션은 복제 DB 로, 나머지는 주 DB 로 보낸다.
+ * - 트랜잭션 시작 시점에는 readOnly 여부가 아직 동기화 매니저에 없으므로 LazyConnectionDataSourceProxy 로
+ *   첫 SQL 을 실행할 때 커넥션을 고른다.
+ * - 복제 DB 는 정상인 것 중에서 라운드 로빈. 모두 비정상이면 주 DB
+ * - 복제 DB 커넥션을 얻지 못하면 비정상으로 표시하고 주 DB 로 보낸다. 다시 정상으로 돌리는 것은 checkReplicas()
+ * - 쓰기 트랜잭션을 커밋하면 ReadYourWrites 에 기록하고, window 동안은 같은 클라이언트의 읽기도 주 DB 로 보낸다.
+ * - onPrimary 안에서 고르는 커넥션은 읽기 전용이어도 주 DB (복제 지연이 있으면 안 되는 읽기, 쓰기로 기록하지 않는다)
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+    static final String PRIMARY = "primary";
+    private static final ThreadLocal<Boolean> PRIMARY_READ = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas;
+    private final List<String> replicaNames;
+    private final Set<String> unhealthy = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger next = new AtomicInteger();
+    private final ReadYourWrites readYourWrites;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, ReadYourWrites readYourWrites) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.replicaNames = new ArrayList<>(replicas.keySet());
+        this.readYourWrites = readYourWrites;
+
+        Router router = new Router();
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        router.setTargetDataSources(targets);
+        router.setDefaultTargetDataSource(primary);
+        router.afterPropertiesSet();
+        setTargetDataSource(router);
+        afterPropertiesSet();
+    }
+
+    /**
+     * 복제 DB 상태 확인 (ReplicaHealthChecker 가 주기적으로 호출)
+     */
+    public void checkReplicas() {
+        for (String name : replicaNames) {
+            try (Connection connection = replicas.get(name).getConnection()) {
+                if (!connection.isValid(1)) {
+                    throw new SQLException("connection is not valid");
+                }
+                if (unhealthy.remove(name)) {
+                    log.info("복제 DB {} 복구", name);
+                }
+            } catch (SQLException e) {
+                markUnhealthy(name, e);
+            }
+        }
+    }
+
+    /**
+     * work 안에서 커넥션을 고르는 트랜잭션은 읽기 전용이어도 주 DB 로 보낸다. (쓰기로 기록하지 않는다)
+     * 커넥션은 트랜잭션의 첫 SQL 때 고르므로 이미 SQL 을 실행한 트랜잭션 안에서 부르면 그 커넥션을 그대로 쓴다.
+     */
+    public static <T> T onPrimary(Supplier<T> work) {
+        Boolean previous = PRIMARY_READ.get();
+        PRIMARY_READ.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY_READ.remove();
+            } else {
+                PRIMARY_READ.set(previous);
+            }
+        }
+    }
+
+    public Set<String> getHealthyReplicas() {
+        Set<String> healthy = new LinkedHashSet<>(replicaNames);
+        healthy.removeAll(unhealthy);
+        return healthy;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DataSource replica : replicas.values()) {
+            if (replica instanceof Closeable) {
+                ((Closeable) replica).close();
+            }
+        }
+        if (primary instanceof Closeable) {
+            ((Closeable) primary).close();
+        }
+    }
+
+    private String determineKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            recordWriteOnCommit();
+            return PRIMARY;
+        }
+        if (PRIMARY_READ.get() != null || readYourWrites.isPrimaryRequired()) {
+            return PRIMARY;
+        }
+        return nextHealthyReplica();
+    }
+
+    private String nextHealthyReplica() {
+        int size = replicaNames.size();
+        if (size == 0) {
+            return PRIMARY;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            String name = replicaNames.get((start + i) % size);
+            if (!unhealthy.contains(name)) {
+                return name;
+            }
+        }
+        return PRIMARY;
+    }
+
+    private void markUnhealthy(String name, SQLException e) {
+        if (unhealthy.add(name)) {
+            log.warn("복제 DB {} 제외: {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * 실제 쓰기 트랜잭션이면 커밋 후 ReadYourWrites 에 기록 (트랜잭션 밖 조회는 기록하지 않는다)
+     */
+    private void recordWriteOnCommit() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    readYourWrites.wrote();
+                }
+            });
+        }
+    }
+
+    /**
+     * 실제 커넥션을 고르는 DataSource (LazyConnectionDataSourceProxy 가 첫 SQL 때 호출)
+     */
+    private class Router extends AbstractRoutingDataSource {
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            return determineKey();
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            String key = determineKey();
+            if (PRIMARY.equals(key)) {
+                return primary.getConnection();
+            }
+            try {
+                return replicas.get(key).getConnection();
+            } catch (SQLException e) {
+                markUnhealthy(key, e);
+                return primary.getConnection();
+            }
+        }
+    }
+}
@@ -3,6 +3,8 @@ package jpabook.jpashop.domain;
 import jpabook.jpashop.domain.item.Item;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -11,10 +13,11 @@ import java.util.List;
 import static javax.persistence.FetchType.*;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "category")
 @Getter @Setter
 public class Category {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(generator = PooledLoSequenceGenerator.NAME)
     @Column(name = "category_id")
     private Long id;
 
@@ -23,7 +26,8 @@ public class Category {
     @ManyToMany
     @JoinTable(name = "category_item",
             joinColumns = @JoinColumn(name = "category_id"),
-            inverseJoinColumns = @JoinColumn(name = "item_id"))
+            inverseJoinColumns = @JoinColumn(name = "item_id"),
+            indexes = @Index(name = "idx_category_item_category", columnList = "category_id, item_id")) //하위 카테고리 상품 조회
     private List<Item> items = new ArrayList<>();
 
     @ManyToOne(fetch = LAZY)
@@ -39,4 +43,17 @@ public class Category {
         child.setParent(this);
     }
 
+    /**
+     * 부모 카테고리 변경 (null 이면 최상위)
+     */
+    public void moveTo(Category parent) {
+        if (this.parent != null) {
+            this.parent.getChild().remove(this);
+        }
+        this.parent = null;
+        if (parent != null) {
+            parent.addChildCategory(this);
+        }
+    }
+
 }
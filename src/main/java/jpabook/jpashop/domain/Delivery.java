@@ -12,7 +12,7 @@ import static javax.persistence.FetchType.*;
 @Getter @Setter
 public class Delivery {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(generator = PooledLoSequenceGenerator.NAME)
     @Column(name = "delivery_id")
     private Long id;
 
@@ -25,4 +25,7 @@ public class Delivery {
 
     @Enumerated(EnumType.STRING)
     private DeliveryStatus status; //READY, COMP
+
+    @Version
+    private Long version;
 }
@@ -5,6 +5,7 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.Hibernate;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
@@ -14,12 +15,12 @@ import java.util.List;
 import static javax.persistence.FetchType.*;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = @Index(name = "idx_orders_status_order_date", columnList = "status, orderDate"))
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class Order {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(generator = PooledLoSequenceGenerator.NAME)
     @Column(name = "order_id")
     private Long id;
 
@@ -39,15 +40,28 @@ public class Order {
     @Enumerated(EnumType.STRING)
     private OrderStatus status; //주문상태 [ORDER, CANCEL]
 
+    //주문상품을 읽지 않고 목록 조회/정렬/집계를 하기 위해 주문상품을 추가할 때 같이 계산해 둔다.
+    private int totalPrice; //전체 주문 가격 (주문상품 가격 * 수량의 합)
+    private int itemCount; //전체 주문 수량 (주문상품 수량의 합)
+
+    @Version //동시에 같은 주문을 취소하면 나중 커밋이 실패한다. (벌크 취소도 같이 올린다)
+    private Long version;
+
     //==연관관계 메서드==//
     public void setMember(Member member) {
         this.member = member;
-        member.getOrders().add(this);
+        //회원의 주문 목록을 아직 읽지 않았으면 건드리지 않는다. (DB 에 반영된 뒤 읽을 때 같이 읽힌다)
+        //바이트코드 향상된 엔티티는 getOrders() 만 호출해도 목록 전체를 읽어서 주문할 때마다 회원의 주문을 모두 읽게 된다.
+        if (Hibernate.isPropertyInitialized(member, "orders")) {
+            member.getOrders().add(this);
+        }
     }
 
     public void addOrderItem(OrderItem orderItem) {
         orderItems.add(orderItem);
         orderItem.setOrder(this);
+        totalPrice += orderItem.getTotalPrice();
+        itemCount += orderItem.getCount();
     }
 
     public void setDelivery(Delivery delivery) {
@@ -73,26 +87,23 @@ public class Order {
      * 주문 취소
      */
     public void cancel() {
-        if (delivery.getStatus() == DeliveryStatus.COMP) {
-            throw new IllegalStateException("이미 배송완료된 상품은 취소가 불가능합니다.");
-        }
-
-        this.setStatus(OrderStatus.CANCEL);
+        markCanceled();
         for (OrderItem orderItem : orderItems) {
             orderItem.cancel();
         }
     }
 
-    //==조회 로직==//
     /**
-     * 전체 주문 가격 조회
+     * 주문 상태만 취소로 변경 (재고는 ItemStockRepository 로 따로 되돌리는 경우)
      */
-    public int getTotalPrice() {
-        int totalPrice = 0;
-        for (OrderItem orderItem : orderItems) {
-            totalPrice += orderItem.getTotalPrice();
+    public void markCanceled() {
+        if (status == OrderStatus.CANCEL) {
+            throw new IllegalStateException("이미 취소된 주문입니다.");
+        }
+        if (delivery.getStatus() == DeliveryStatus.COMP) {
+            throw new IllegalStateException("이미 배송완료된 상품은 취소가 불가능합니다.");
         }
-        return totalPrice;
-    }
 
+        this.setStatus(OrderStatus.CANCEL);
+    }
 }
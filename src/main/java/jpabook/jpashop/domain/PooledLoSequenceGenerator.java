@@ -0,0 +1,34 @@
+package jpabook.jpashop.domain;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 모든 엔티티가 같이 쓰는 시퀀스 id 생성기 (pooled-lo)
+ * - 시퀀스를 한 번 읽을 때마다 allocation_size 개의 id 를 메모리에서 나눠준다. (persist 마다 시퀀스 조회 X)
+ * - 시퀀스 값이 블록의 시작(lo)이므로 다른 애플리케이션이 시퀀스를 직접 읽어도 id 가 겹치지 않는다.
+ * - 블록 크기는 spring.jpa.properties.jpashop.id.allocation_size 로 조절 (기본 50, 1 이면 기존처럼 매번 조회)
+ */
+public class PooledLoSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String NAME = "pooled_lo";
+    public static final String ALLOCATION_SIZE = "jpashop.id.allocation_size";
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        int allocationSize = ConfigurationHelper.getInt(ALLOCATION_SIZE, settings, DEFAULT_ALLOCATION_SIZE);
+
+        params.setProperty(INCREMENT_PARAM, String.valueOf(allocationSize));
+        params.setProperty(OPT_PARAM, "pooled-lo");
+        super.configure(type, params, serviceRegistry);
+    }
+}
@@ -1,10 +1,13 @@
 package jpabook.jpashop.domain.item;
 
 import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.PooledLoSequenceGenerator;
 import jpabook.jpashop.exception.NotEnoughStockException;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -13,11 +16,12 @@ import java.util.List;
 @Entity
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "dtype")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "item") //SINGLE_TABLE 하위 타입(Book, Album, Movie)도 같은 영역
 @Getter @Setter
 public abstract class Item {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = PooledLoSequenceGenerator.NAME)
     @Column(name = "item_id")
     private Long id;
 
@@ -25,6 +29,9 @@ public abstract class Item {
     private int price;
     private int stockQuantity;
 
+    @Version //재고를 바꾸는 네이티브 UPDATE(ItemStockRepository)도 같이 올린다.
+    private Long version;
+
     @ManyToMany(mappedBy = "items")
     private List<Category> categories = new ArrayList<>();
 
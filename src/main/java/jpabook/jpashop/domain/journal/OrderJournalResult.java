@@ -0,0 +1,62 @@
+package jpabook.jpashop.domain.journal;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * 주문 저널 이벤트를 주문 테이블에 반영한 결과 (이벤트 하나에 한 줄)
+ * 순번은 노드마다 따로 발급하므로 (journalId, seq) 가 키다.
+ * 주문과 같은 트랜잭션에서 저장하므로 journalId 별 max(seq) 가 그 노드의 반영 위치(checkpoint)다. 시작할 때 그 다음 이벤트부터 다시 반영한다.
+ */
+@Entity
+@IdClass(OrderJournalResult.Key.class)
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OrderJournalResult {
+
+    @Id
+    private String journalId; //저널을 가진 노드 (jpashop.order-journal.journal-id)
+
+    @Id
+    private Long seq; //저널 순번
+
+    @Column(name = "order_id")
+    private Long orderId; //만든 주문 (거절이면 null)
+
+    private String rejectedReason; //재고 부족, 없는 회원/상품 등
+
+    private OrderJournalResult(String journalId, Long seq, Long orderId, String rejectedReason) {
+        this.journalId = journalId;
+        this.seq = seq;
+        this.orderId = orderId;
+        this.rejectedReason = rejectedReason;
+    }
+
+    public static OrderJournalResult applied(String journalId, long seq, Long orderId) {
+        return new OrderJournalResult(journalId, seq, orderId, null);
+    }
+
+    public static OrderJournalResult rejected(String journalId, long seq, String reason) {
+        return new OrderJournalResult(journalId, seq, null, reason);
+    }
+
+    public boolean isRejected() {
+        return orderId == null;
+    }
+
+    @EqualsAndHashCode
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String journalId;
+        private Long seq;
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * 엔티티 id 는 모두 {@link jpabook.jpashop.domain.PooledLoSequenceGenerator} 로 hibernate_sequence 에서 블록 단위로 할당한다.
+ */
+@GenericGenerator(name = PooledLoSequenceGenerator.NAME, strategy = "jpabook.jpashop.domain.PooledLoSequenceGenerator")
+package jpabook.jpashop.domain;
+
+import org.hibernate.annotations.GenericGenerator;
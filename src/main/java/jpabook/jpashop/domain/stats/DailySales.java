@@ -0,0 +1,25 @@
+package jpabook.jpashop.domain.stats;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.LocalDate;
+
+/**
+ * 일별 매출 집계 (취소된 주문 제외)
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class DailySales {
+
+    @Id
+    private LocalDate salesDate;
+
+    private long revenue; //매출 (주문 가격 합)
+    private long units; //판매 수량
+    private long orderCount; //주문 수
+}
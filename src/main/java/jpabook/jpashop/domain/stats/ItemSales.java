@@ -0,0 +1,40 @@
+package jpabook.jpashop.domain.stats;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * 상품별 일 매출 집계 (취소된 주문 제외)
+ * 기간 조회를 위해 (sales_date, item_id) 인덱스를 둔다.
+ */
+@Entity
+@IdClass(ItemSales.Key.class)
+@Table(indexes = @Index(name = "idx_item_sales_date_item", columnList = "salesDate, itemId"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class ItemSales {
+
+    @Id
+    private Long itemId;
+
+    @Id
+    private LocalDate salesDate;
+
+    private long revenue; //매출 (주문 가격 * 수량 합)
+    private long units; //판매 수량
+
+    @EqualsAndHashCode
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Long itemId;
+        private LocalDate salesDate;
+    }
+}
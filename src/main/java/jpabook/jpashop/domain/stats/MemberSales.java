@@ -0,0 +1,25 @@
+package jpabook.jpashop.domain.stats;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * 회원별 누적 구매 집계 (취소된 주문 제외)
+ * 상위 회원 조회를 위해 revenue 인덱스를 둔다.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_member_sales_revenue", columnList = "revenue"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class MemberSales {
+
+    @Id
+    private Long memberId;
+
+    private long revenue; //구매 금액 합
+    private long units; //구매 수량
+    private long orderCount; //주문 수
+}
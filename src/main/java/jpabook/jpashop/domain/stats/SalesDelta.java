@@ -0,0 +1,31 @@
+package jpabook.jpashop.domain.stats;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * 매출 집계에 아직 반영하지 않은 주문/취소 기록
+ * 주문 트랜잭션은 이 테이블에 한 줄만 추가하고, SalesRollupService 가 모아서 집계 테이블에 반영한 뒤 지운다.
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class SalesDelta {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY) //일괄 취소에서 insert ... select 로도 추가한다.
+    @Column(name = "sales_delta_id")
+    private Long id;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    private int sign; //주문 +1, 취소 -1
+
+    public SalesDelta(Long orderId, int sign) {
+        this.orderId = orderId;
+        this.sign = sign;
+    }
+}
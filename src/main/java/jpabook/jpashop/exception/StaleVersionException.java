@@ -0,0 +1,27 @@
+package jpabook.jpashop.exception;
+
+/**
+ * 화면에서 읽은 뒤 다른 사람이 먼저 수정한 데이터를 저장하려고 할 때
+ * 다시 시도해도 성공할 수 없으므로(사용자가 최신 값을 다시 봐야 한다) 재시도 대상이 아니다.
+ */
+public class StaleVersionException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public StaleVersionException() {
+        super();
+    }
+
+    public StaleVersionException(String message) {
+        super(message);
+    }
+
+    public StaleVersionException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public StaleVersionException(Throwable cause) {
+        super(cause);
+    }
+
+}
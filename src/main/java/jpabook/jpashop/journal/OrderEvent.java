@@ -0,0 +1,60 @@
+package jpabook.jpashop.journal;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * 주문 저널 레코드 (주문 한 건)
+ * 고정 길이 40바이트: seq(8) memberId(8) itemId(8) count(4) createdAt(8) crc32(4)
+ * 고정 길이라서 찢어진 마지막 레코드(쓰는 중 장애)를 길이와 CRC 로 바로 찾을 수 있다.
+ */
+@Getter
+@ToString
+public class OrderEvent {
+
+    static final int SIZE = 40;
+    private static final int PAYLOAD = SIZE - 4;
+
+    private final long seq;
+    private final long memberId;
+    private final long itemId;
+    private final int count;
+    private final long createdAt; //epoch millis
+
+    OrderEvent(long seq, long memberId, long itemId, int count, long createdAt) {
+        this.seq = seq;
+        this.memberId = memberId;
+        this.itemId = itemId;
+        this.count = count;
+        this.createdAt = createdAt;
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.putLong(seq).putLong(memberId).putLong(itemId).putInt(count).putLong(createdAt);
+        buffer.putInt(crc(buffer, start));
+    }
+
+    /**
+     * @return CRC 가 맞지 않으면 null (찢어진 레코드)
+     */
+    static OrderEvent readFrom(ByteBuffer buffer) {
+        int start = buffer.position();
+        int expected = buffer.getInt(start + PAYLOAD);
+        if (crc(buffer, start) != expected) {
+            return null;
+        }
+        OrderEvent event = new OrderEvent(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getInt(), buffer.getLong());
+        buffer.getInt();
+        return event;
+    }
+
+    private static int crc(ByteBuffer buffer, int start) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(start).limit(start + PAYLOAD));
+        return (int) crc.getValue();
+    }
+}
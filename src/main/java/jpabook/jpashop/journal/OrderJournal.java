@@ -0,0 +1,340 @@
+package jpabook.jpashop.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 추가만 하는 주문 저널 (로컬 세그먼트 파일)
+ * - append() 는 쓰기 스레드 큐에 넣고, 쓰기 스레드가 그때까지 쌓인 레코드를 한 번에 쓰고 fsync 한 번 (group commit)
+ *   fsync 가 끝나야 future 가 완료되므로 완료된 주문은 장애가 나도 남아 있다.
+ * - 순번(seq)은 쓰기 스레드가 매기므로 파일 순서 = 순번 순서
+ * - 세그먼트 파일 이름은 첫 순번 (orders-00000000000000000001.journal), segmentBytes 를 넘으면 새 파일
+ * - 열 때 모든 세그먼트를 읽어 마지막 순번을 찾고, 마지막 파일 끝의 찢어진 레코드는 잘라낸다.
+ */
+@Slf4j
+public class OrderJournal implements Closeable {
+
+    private static final String PREFIX = "orders-";
+    private static final String SUFFIX = ".journal";
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final int maxGroupSize;
+    private final Consumer<List<OrderEvent>> onDurable;
+
+    private final TreeMap<Long, Path> segments = new TreeMap<>(); //첫 순번 -> 파일
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final long recoveredLastSeq;
+
+    private FileChannel channel; //쓰기 스레드만 사용
+    private long nextSeq;
+    private volatile boolean closed;
+
+    /**
+     * @param minLastSeq 이미 쓴 것으로 볼 마지막 순번. 파일이 없어져도 이미 반영한 순번을 다시 발급하지 않도록 반영 위치를 넘긴다.
+     * @param onDurable fsync 가 끝난 레코드를 순번 순서로 받는다. (쓰기 스레드에서 호출되므로 오래 걸리면 안 된다)
+     */
+    public OrderJournal(Path dir, long segmentBytes, int maxGroupSize, long minLastSeq, Consumer<List<OrderEvent>> onDurable) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.segmentBytes = segmentBytes;
+        this.maxGroupSize = maxGroupSize;
+        this.onDurable = onDurable;
+
+        this.recoveredLastSeq = recover();
+        if (recoveredLastSeq < minLastSeq) {
+            log.warn("주문 저널 파일의 마지막 순번({})이 반영 위치({})보다 작다. {} 부터 새 세그먼트로 기록", recoveredLastSeq, minLastSeq, minLastSeq + 1);
+            this.nextSeq = minLastSeq + 1;
+            this.channel = newSegment(nextSeq);
+        } else {
+            this.nextSeq = recoveredLastSeq + 1;
+            this.channel = segments.isEmpty() ? newSegment(nextSeq) : openForAppend(segments.lastEntry().getValue());
+        }
+
+        this.writer = new Thread(this::writeLoop, "order-journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * 주문 이벤트 추가
+     * @return fsync 가 끝나면 순번이 매겨진 이벤트로 완료
+     */
+    public CompletableFuture<OrderEvent> append(long memberId, long itemId, int count) {
+        Pending pending = new Pending(memberId, itemId, count, System.currentTimeMillis());
+        if (closed) {
+            pending.future.completeExceptionally(new IllegalStateException("주문 저널이 닫혔습니다."));
+            return pending.future;
+        }
+        queue.add(pending);
+        return pending.future;
+    }
+
+    /**
+     * 열 때 파일에 있던 마지막 순번 (이후 append 는 이 다음 순번부터)
+     */
+    public long getRecoveredLastSeq() {
+        return recoveredLastSeq;
+    }
+
+    /**
+     * 열 때 파일에 있던 이벤트 중 afterSeq 다음부터 순서대로 읽는다. (시작 시 미반영 이벤트 재반영용)
+     */
+    public void replay(long afterSeq, Consumer<OrderEvent> consumer) throws IOException {
+        List<Path> files;
+        synchronized (segments) {
+            Long from = segments.floorKey(afterSeq + 1);
+            files = new ArrayList<>((from == null ? segments : segments.tailMap(from, true)).values());
+        }
+        for (Path file : files) {
+            boolean done = readSegment(file, event -> {
+                if (event.getSeq() > recoveredLastSeq) {
+                    return false;
+                }
+                if (event.getSeq() > afterSeq) {
+                    consumer.accept(event);
+                }
+                return true;
+            });
+            if (!done) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * appliedSeq 까지 모두 반영된 세그먼트 파일 삭제 (쓰고 있는 마지막 파일은 남긴다)
+     */
+    public void deleteSegmentsUpTo(long appliedSeq) {
+        List<Path> deletable = new ArrayList<>();
+        synchronized (segments) {
+            while (segments.size() > 1) {
+                Long first = segments.firstKey();
+                Long next = segments.higherKey(first);
+                if (next - 1 > appliedSeq) {
+                    break;
+                }
+                deletable.add(segments.remove(first));
+            }
+        }
+        for (Path file : deletable) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("주문 저널 세그먼트 삭제 실패: {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * 이미 받은 append 는 모두 쓰고 닫는다.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            writer.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        //닫는 순간 들어온 것
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(new IllegalStateException("주문 저널이 닫혔습니다."));
+        }
+        channel.close();
+    }
+
+    /**
+     * 쓰기 스레드 (FileChannel 은 스레드가 interrupt 되면 닫히므로 interrupt 대신 closed 플래그로 멈춘다)
+     */
+    private void writeLoop() {
+        List<Pending> group = new ArrayList<>(maxGroupSize);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(maxGroupSize * OrderEvent.SIZE);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(group, maxGroupSize - group.size());
+
+            try {
+                List<OrderEvent> events = writeGroup(group, buffer);
+                onDurable.accept(events); //응답하기 전에 반영 대기열에 넣는다.
+                for (int i = 0; i < group.size(); i++) {
+                    group.get(i).future.complete(events.get(i));
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("주문 저널 쓰기 실패 ({} 건)", group.size(), e);
+                group.forEach(pending -> pending.future.completeExceptionally(e));
+            }
+            group.clear();
+        }
+    }
+
+    private List<OrderEvent> writeGroup(List<Pending> group, ByteBuffer buffer) throws IOException {
+        if (channel.size() >= segmentBytes) {
+            channel.close();
+            channel = newSegment(nextSeq);
+        }
+
+        long startPosition = channel.size();
+        List<OrderEvent> events = new ArrayList<>(group.size());
+        buffer.clear();
+        for (Pending pending : group) {
+            OrderEvent event = new OrderEvent(nextSeq + events.size(), pending.memberId, pending.itemId, pending.count, pending.createdAt);
+            event.writeTo(buffer);
+            events.add(event);
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            channel.truncate(startPosition); //일부만 써진 묶음은 없던 것으로 (순번도 다시 쓴다)
+            throw e;
+        }
+        nextSeq += events.size();
+        return events;
+    }
+
+    private long recover() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(file -> file.getFileName().toString().startsWith(PREFIX) && file.getFileName().toString().endsWith(SUFFIX))
+                    .forEach(file -> segments.put(firstSeqOf(file), file));
+        }
+
+        long lastSeq = 0;
+        for (Path file : segments.values()) {
+            long[] last = {0};
+            long[] validBytes = {0};
+            boolean complete = readSegment(file, event -> {
+                last[0] = event.getSeq();
+                validBytes[0] += OrderEvent.SIZE;
+                return true;
+            });
+            if (last[0] > 0) {
+                lastSeq = last[0];
+            }
+            if (!complete || Files.size(file) != validBytes[0]) {
+                if (!file.equals(segments.lastEntry().getValue())) {
+                    throw new IOException("주문 저널 세그먼트 중간이 손상되었습니다: " + file);
+                }
+                log.warn("주문 저널 마지막 레코드가 찢어져 있어 잘라냄: {} ({} -> {} bytes)", file, Files.size(file), validBytes[0]);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(validBytes[0]);
+                    channel.force(true);
+                }
+            }
+        }
+        if (lastSeq == 0 && !segments.isEmpty()) {
+            lastSeq = segments.lastKey() - 1; //레코드 없이 만든 파일만 있는 경우
+        }
+        log.info("주문 저널 열기: {} (세그먼트 {}개, 마지막 순번 {})", dir, segments.size(), lastSeq);
+        return lastSeq;
+    }
+
+    /**
+     * @param consumer false 를 반환하면 그만 읽는다.
+     * @return 파일 끝까지 정상 레코드였으면 true
+     */
+    private boolean readSegment(Path file, RecordConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(OrderEvent.SIZE * 1024);
+            while (true) {
+                buffer.clear();
+                int read = 0;
+                while (buffer.hasRemaining() && (read = channel.read(buffer)) > 0) {
+                    //버퍼를 채운다.
+                }
+                buffer.flip();
+                while (buffer.remaining() >= OrderEvent.SIZE) {
+                    OrderEvent event = OrderEvent.readFrom(buffer);
+                    if (event == null) {
+                        return false;
+                    }
+                    if (!consumer.accept(event)) {
+                        return true;
+                    }
+                }
+                if (read < 0 || buffer.hasRemaining()) {
+                    return !buffer.hasRemaining();
+                }
+            }
+        }
+    }
+
+    private FileChannel newSegment(long firstSeq) throws IOException {
+        Path file = dir.resolve(String.format("%s%020d%s", PREFIX, firstSeq, SUFFIX));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        forceDirectory(); //새 파일 이름도 디스크에 남아야 한다.
+        synchronized (segments) {
+            segments.put(firstSeq, file);
+        }
+        return channel;
+    }
+
+    private FileChannel openForAppend(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            //디렉터리 fsync 를 지원하지 않는 파일 시스템(Windows 등)
+        }
+    }
+
+    private static long firstSeqOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    @FunctionalInterface
+    private interface RecordConsumer {
+        boolean accept(OrderEvent event);
+    }
+
+    private static class Pending {
+
+        private final long memberId;
+        private final long itemId;
+        private final int count;
+        private final long createdAt;
+        private final CompletableFuture<OrderEvent> future = new CompletableFuture<>();
+
+        Pending(long memberId, long itemId, int count, long createdAt) {
+            this.memberId = memberId;
+            this.itemId = itemId;
+            this.count = count;
+            this.createdAt = createdAt;
+        }
+    }
+}
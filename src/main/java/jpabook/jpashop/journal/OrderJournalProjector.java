@@ -0,0 +1,222 @@
+package jpabook.jpashop.journal;
+
+import jpabook.jpashop.domain.journal.OrderJournalResult;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.journal.OrderJournalRepository;
+import jpabook.jpashop.service.OrderService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * fsync 가 끝난 주문 이벤트를 주문 테이블에 반영하는 스레드 (노드에 하나)
+ * - 이벤트를 batchSize 건씩 트랜잭션 하나로 반영하고, 이벤트마다 OrderJournalResult 를 같은 트랜잭션에 남긴다.
+ *   반영과 반영 위치가 같이 커밋되므로 장애가 나도 이벤트가 두 번 반영되지 않는다.
+ * - 시작하면 먼저 저널 파일에서 반영 위치 다음 이벤트를 읽어 반영(replay)한 뒤, 새로 기록되는 이벤트를 반영한다.
+ * - DB 장애(일시적 오류)로 반영이 실패하면 같은 묶음을 간격을 늘려 가며 다시 시도한다. (이벤트는 파일에 있으므로 잃지 않는다)
+ * - 그 밖의 이유로 묶음이 실패하면 이벤트마다 트랜잭션 하나로 다시 반영하고, 혼자서도 실패하는 이벤트는 거절로 기록한다.
+ *   (이벤트 하나 때문에 반영이 멈추지 않는다)
+ * - 롤백된 묶음의 순번에 결과가 이미 있으면 다른 노드가 같은 journalId 를 쓰는 설정 오류이므로 반영을 멈춘다.
+ */
+@Slf4j
+class OrderJournalProjector {
+
+    private static final long MAX_RETRY_DELAY_MS = 5_000;
+    private static final int MAX_REASON_LENGTH = 255; //rejected_reason 컬럼 길이
+
+    private final OrderService orderService;
+    private final OrderJournalRepository orderJournalRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final String journalId;
+    private final int batchSize;
+    private final BlockingQueue<OrderEvent> queue = new LinkedBlockingQueue<>();
+
+    private OrderJournal journal;
+    private Thread thread;
+    private volatile boolean running;
+    private volatile long appliedSeq;
+
+    OrderJournalProjector(OrderService orderService, OrderJournalRepository orderJournalRepository,
+                          TransactionTemplate transactionTemplate, String journalId, int batchSize) {
+        this.orderService = orderService;
+        this.orderJournalRepository = orderJournalRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.journalId = journalId;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 저널 쓰기 스레드에서 호출 (큐에 넣기만 한다)
+     */
+    void enqueue(List<OrderEvent> events) {
+        queue.addAll(events);
+    }
+
+    long getAppliedSeq() {
+        return appliedSeq;
+    }
+
+    void start(OrderJournal journal, long appliedSeq) {
+        this.journal = journal;
+        this.appliedSeq = appliedSeq;
+        this.running = true;
+        this.thread = new Thread(this::run, "order-journal-projector");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 큐에 남은 이벤트를 반영하고 멈춘다. (시간 안에 못 끝낸 이벤트는 다음 시작 때 replay)
+     */
+    void stop(long timeoutMillis) throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.join(timeoutMillis);
+        }
+    }
+
+    private void run() {
+        List<OrderEvent> batch = new ArrayList<>(batchSize);
+        try {
+            long replayFrom = appliedSeq;
+            journal.replay(replayFrom, event -> {
+                batch.add(event);
+                if (batch.size() == batchSize) {
+                    apply(batch);
+                    batch.clear();
+                }
+            });
+            apply(batch);
+            batch.clear();
+            if (appliedSeq > replayFrom) {
+                log.info("주문 저널 replay 완료: {} ~ {}", replayFrom + 1, appliedSeq);
+            }
+
+            while (running || !queue.isEmpty()) {
+                OrderEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                apply(batch);
+                batch.clear();
+            }
+        } catch (IOException e) {
+            log.error("주문 저널 replay 실패, 반영을 멈춘다.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            //멈추는 중 반영 실패 또는 결과 키 충돌 (apply 에서 로그를 남겼다)
+        }
+    }
+
+    private void apply(List<OrderEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long delay = 100;
+        while (true) {
+            try {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> batch.forEach(this::applyEvent));
+                    appliedSeq = Math.max(appliedSeq, batch.get(batch.size() - 1).getSeq());
+                } catch (RuntimeException e) {
+                    if (isTransient(e)) {
+                        throw e;
+                    }
+                    checkNoOtherWriter(batch, e);
+                    log.warn("주문 저널 묶음 반영 실패, 이벤트마다 다시 반영 ({} ~ {}): {}", batch.get(0).getSeq(), batch.get(batch.size() - 1).getSeq(), e.toString());
+                    applyEach(batch);
+                }
+                journal.deleteSegmentsUpTo(appliedSeq);
+                return;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    log.warn("주문 저널 반영 실패, 다음 시작 때 {} 부터 다시 반영: {}", batch.get(0).getSeq(), e.getMessage());
+                    throw e;
+                }
+                log.error("주문 저널 반영 실패, {}ms 후 다시 시도 ({} ~ {})", delay, batch.get(0).getSeq(), batch.get(batch.size() - 1).getSeq(), e);
+                sleep(delay);
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY_MS);
+            }
+        }
+    }
+
+    /**
+     * 이벤트마다 트랜잭션 하나로 반영. 혼자서도 실패하면(일시적 오류 제외) 원인을 거절 사유로 남기고 넘어간다.
+     */
+    private void applyEach(List<OrderEvent> batch) {
+        for (OrderEvent event : batch) {
+            if (event.getSeq() <= appliedSeq) {
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> applyEvent(event));
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    throw e;
+                }
+                log.error("주문 저널 이벤트 반영 실패, 거절로 기록 (seq {})", event.getSeq(), e);
+                String reason = String.valueOf(e.getMessage());
+                OrderJournalResult rejected = OrderJournalResult.rejected(journalId, event.getSeq(),
+                        reason.length() > MAX_REASON_LENGTH ? reason.substring(0, MAX_REASON_LENGTH) : reason);
+                transactionTemplate.executeWithoutResult(status -> orderJournalRepository.save(rejected));
+            }
+            appliedSeq = event.getSeq();
+        }
+    }
+
+    /**
+     * 롤백된 묶음의 (아직 반영 안 한) 순번에 결과가 있으면 다른 노드가 같은 journalId 로 쓴 것이므로 반영을 멈춘다.
+     */
+    private void checkNoOtherWriter(List<OrderEvent> batch, RuntimeException cause) {
+        long from = Math.max(batch.get(0).getSeq(), appliedSeq + 1);
+        long to = batch.get(batch.size() - 1).getSeq();
+        Long written = transactionTemplate.execute(status -> orderJournalRepository.countInRange(journalId, from, to));
+        if (written != null && written > 0) {
+            log.error("주문 저널 결과 키 충돌, 반영을 멈춘다. 다른 노드가 같은 journal-id({}) 를 쓰는지 확인 ({} ~ {})", journalId, from, to, cause);
+            running = false;
+            throw cause;
+        }
+    }
+
+    //DB 연결 끊김, 잠금 충돌 등 다시 하면 성공할 수 있는 오류 (이벤트를 거절하지 않고 묶음을 다시 시도)
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException || e instanceof CannotCreateTransactionException;
+    }
+
+    private void applyEvent(OrderEvent event) {
+        if (event.getSeq() <= appliedSeq) {
+            return; //replay 와 큐에 같은 이벤트가 있을 때
+        }
+        OrderJournalResult result;
+        try {
+            Long orderId = orderService.orderFromJournal(event.getMemberId(), event.getItemId(), event.getCount());
+            result = OrderJournalResult.applied(journalId, event.getSeq(), orderId);
+        } catch (IllegalArgumentException | NotEnoughStockException e) {
+            result = OrderJournalResult.rejected(journalId, event.getSeq(), e.getMessage());
+        }
+        orderJournalRepository.save(result);
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
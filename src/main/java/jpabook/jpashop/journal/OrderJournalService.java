@@ -0,0 +1,121 @@
+package jpabook.jpashop.journal;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.domain.journal.OrderJournalResult;
+import jpabook.jpashop.repository.journal.OrderJournalRepository;
+import jpabook.jpashop.service.OrderService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 쓰기 지연(write-behind) 주문 (jpashop.order-journal.enabled=true 일 때만)
+ * - submit(): 주문을 저널 파일에 기록하고 fsync 가 끝나면 순번을 돌려준다. 주문/주문상품/배송/재고 테이블은 건드리지 않는다.
+ *   응답 시간은 DB 쓰기가 아니라 fsync 한 번(동시에 들어온 주문끼리 공유)에 묶인다.
+ * - OrderJournalProjector 가 뒤에서 묶음 단위로 주문 테이블에 반영한다. 재고 부족 등은 그때 거절되므로 결과는 status() 로 확인한다.
+ * - 저널은 노드 로컬 파일이므로 이 노드가 발급한 순번만 조회할 수 있다.
+ *   순번은 노드마다 1 부터 발급하므로 반영 결과와 반영 위치는 journal-id(노드마다 달라야 한다)로 나눠 둔다.
+ * 메트릭: jpashop.order-journal.group-commit.size (fsync 한 번에 쓴 주문 수), jpashop.order-journal.lag (기록됐지만 반영 안 된 주문 수)
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "jpashop.order-journal", name = "enabled", havingValue = "true")
+public class OrderJournalService {
+
+    private final OrderJournalRepository orderJournalRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderJournalProjector projector;
+    private final OrderJournal journal;
+    private final String journalId;
+    private final long appliedSeqAtStart;
+    private volatile long durableSeq;
+
+    public OrderJournalService(OrderService orderService,
+                               OrderJournalRepository orderJournalRepository,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${jpashop.order-journal.dir:./data/order-journal}") String dir,
+                               @Value("${jpashop.order-journal.journal-id:}") String journalId,
+                               @Value("${jpashop.order-journal.segment-size:64MB}") DataSize segmentSize,
+                               @Value("${jpashop.order-journal.max-group-size:1024}") int maxGroupSize,
+                               @Value("${jpashop.order-journal.projector-batch-size:500}") int projectorBatchSize) throws IOException {
+        this.orderJournalRepository = orderJournalRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.journalId = StringUtils.hasText(journalId) ? journalId : InetAddress.getLocalHost().getHostName();
+        this.projector = new OrderJournalProjector(orderService, orderJournalRepository, transactionTemplate, this.journalId, projectorBatchSize);
+
+        //반영 위치를 먼저 읽어서 저널 파일이 없어졌어도 반영한 순번을 다시 발급하지 않게 한다.
+        this.appliedSeqAtStart = transactionTemplate.execute(status -> orderJournalRepository.findLastSeq(this.journalId));
+        DistributionSummary groupSize = DistributionSummary.builder("jpashop.order-journal.group-commit.size")
+                .register(meterRegistry);
+        this.journal = new OrderJournal(Paths.get(dir), segmentSize.toBytes(), maxGroupSize, appliedSeqAtStart, events -> {
+            groupSize.record(events.size());
+            durableSeq = events.get(events.size() - 1).getSeq();
+            projector.enqueue(events);
+        });
+        this.durableSeq = Math.max(journal.getRecoveredLastSeq(), appliedSeqAtStart);
+        Gauge.builder("jpashop.order-journal.lag", this, service -> service.durableSeq - service.projector.getAppliedSeq())
+                .register(meterRegistry);
+    }
+
+    /**
+     * 주문 접수 (저널에 기록되면 반환)
+     * @return 저널 순번 (status 조회용)
+     */
+    public long submit(Long memberId, Long itemId, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("주문 수량은 1 이상이어야 합니다.");
+        }
+        try {
+            return journal.append(memberId, itemId, count).join().getSeq();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("주문 저널 기록 실패", e.getCause());
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public OrderJournalStatus status(long seq) {
+        if (seq <= 0 || seq > durableSeq) {
+            return OrderJournalStatus.unknown(seq);
+        }
+        if (seq > projector.getAppliedSeq()) {
+            return OrderJournalStatus.pending(seq);
+        }
+        OrderJournalResult result = orderJournalRepository.findOne(journalId, seq);
+        return result == null ? OrderJournalStatus.unknown(seq) : OrderJournalStatus.of(result);
+    }
+
+    /**
+     * 반영 위치 다음 이벤트부터 반영 시작 (저널 파일에만 있던 이벤트 replay 포함)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startProjector() {
+        log.info("주문 저널 반영 시작: journal-id {}, 반영 위치 {}, 기록된 마지막 순번 {}", journalId, appliedSeqAtStart, journal.getRecoveredLastSeq());
+        projector.start(journal, appliedSeqAtStart);
+    }
+
+    /**
+     * 받은 주문은 모두 파일에 쓰고, 반영은 할 수 있는 만큼 한 뒤 멈춘다. (남은 것은 다음 시작 때 replay)
+     */
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        journal.close();
+        projector.stop(10_000);
+    }
+}
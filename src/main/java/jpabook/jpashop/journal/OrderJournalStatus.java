@@ -0,0 +1,40 @@
+package jpabook.jpashop.journal;
+
+import jpabook.jpashop.domain.journal.OrderJournalResult;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 저널에 기록된 주문의 반영 상태
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class OrderJournalStatus {
+
+    public enum Status {
+        PENDING, //기록됨, 아직 주문 테이블에 반영 전
+        APPLIED, //주문 생성됨
+        REJECTED, //반영할 때 거절됨 (재고 부족 등)
+        UNKNOWN //이 노드가 발급하지 않은 순번이거나 결과가 지워짐
+    }
+
+    private final long seq;
+    private final Status status;
+    private final Long orderId;
+    private final String reason;
+
+    static OrderJournalStatus pending(long seq) {
+        return new OrderJournalStatus(seq, Status.PENDING, null, null);
+    }
+
+    static OrderJournalStatus unknown(long seq) {
+        return new OrderJournalStatus(seq, Status.UNKNOWN, null, null);
+    }
+
+    static OrderJournalStatus of(OrderJournalResult result) {
+        return result.isRejected()
+                ? new OrderJournalStatus(result.getSeq(), Status.REJECTED, null, result.getRejectedReason())
+                : new OrderJournalStatus(result.getSeq(), Status.APPLIED, result.getOrderId(), null);
+    }
+}
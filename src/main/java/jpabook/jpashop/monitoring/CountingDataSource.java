@@ -0,0 +1,124 @@
+package jpabook.jpashop.monitoring;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+
+/**
+ * 실행되는 SQL 을 현재 스레드의 QueryCounter 에 기록하는 DataSource 프록시
+ * - Connection -> Statement -> ResultSet 을 JDK 동적 프록시로 감싼다.
+ * - 집계 중이 아닌 스레드(QueryCounter.current() == null)에서는 기록만 건너뛴다.
+ */
+public class CountingDataSource extends DelegatingDataSource {
+
+    public CountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(Connection.class, new ConnectionHandler(super.getConnection()));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        Connection connection = super.getConnection(username, password);
+        return wrap(Connection.class, new ConnectionHandler(connection));
+    }
+
+    private static <T> T wrap(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(CountingDataSource.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object target, Object proxy, Method method, Object[] args) throws Throwable {
+        //프록시 자신과의 비교가 깨지지 않도록 equals/hashCode 는 프록시 기준
+        if ("equals".equals(method.getName())) {
+            return proxy == args[0];
+        }
+        if ("hashCode".equals(method.getName())) {
+            return System.identityHashCode(proxy);
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private static class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = CountingDataSource.invoke(target, proxy, method, args);
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return wrap(PreparedStatement.class, new StatementHandler((Statement) result, (String) args[0]));
+                case "prepareCall":
+                    return wrap(CallableStatement.class, new StatementHandler((Statement) result, (String) args[0]));
+                case "createStatement":
+                    return wrap(Statement.class, new StatementHandler((Statement) result, null));
+                default:
+                    return result;
+            }
+        }
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final String preparedSql;
+
+        StatementHandler(Statement target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                Object result = CountingDataSource.invoke(target, proxy, method, args);
+                return "getResultSet".equals(name) ? wrapResultSet((ResultSet) result) : result;
+            }
+
+            long start = System.nanoTime();
+            try {
+                Object result = CountingDataSource.invoke(target, proxy, method, args);
+                return result instanceof ResultSet ? wrapResultSet((ResultSet) result) : result;
+            } finally {
+                QueryCounter counter = QueryCounter.current();
+                if (counter != null) {
+                    String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+                    counter.recordStatement(sql, System.nanoTime() - start);
+                }
+            }
+        }
+
+        private ResultSet wrapResultSet(ResultSet resultSet) {
+            if (resultSet == null) {
+                return null;
+            }
+            return wrap(ResultSet.class, (proxy, method, args) -> {
+                Object result = CountingDataSource.invoke(resultSet, proxy, method, args);
+                if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                    QueryCounter counter = QueryCounter.current();
+                    if (counter != null) {
+                        counter.recordRow();
+                    }
+                }
+                return result;
+            });
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package jpabook.jpashop.monitoring;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * 애플리케이션 DataSource 를 CountingDataSource 로 감싼다.
+ * jpashop.query-monitor.enabled=false 로 끌 수 있다.
+ */
+@Component
+@ConditionalOnProperty(prefix = "jpashop.query-monitor", name = "enabled", matchIfMissing = true)
+public class CountingDataSourcePostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof CountingDataSource)) {
+            return new CountingDataSource((DataSource) bean);
+        }
+        return bean;
+    }
+}
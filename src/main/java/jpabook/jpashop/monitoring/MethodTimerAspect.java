@@ -0,0 +1,113 @@
+package jpabook.jpashop.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.aop.Advice;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.aspectj.AspectJExpressionPointcut;
+import org.springframework.aop.support.AbstractPointcutAdvisor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 서비스 public 메서드 실행 시간 (jpashop.metrics.repository-timers=true 면 리포지토리도)
+ * - jpashop.method{class, method, exception} 타이머 (버킷은 management.metrics.distribution.slo 설정)
+ * - 트랜잭션, @RetryOnConflict 보다 바깥에서 재므로 커밋과 재시도까지 포함된 호출자 기준 시간
+ * - 정상 종료 타이머는 메서드별로 만들어 두고 재사용한다. (호출마다 태그를 만들고 레지스트리를 찾지 않는다)
+ * - @Aspect 대신 MethodInterceptor advisor: 호출마다 JoinPoint 생성, MethodInvocation 복제, 어드바이스 리플렉션 호출이 없다.
+ *   (타이머 한 번 비용은 MethodTimerAspectBenchmark)
+ * - 리포지토리는 기본으로 재지 않는다. 서비스 안에서 겹쳐 재면 요청마다 타이머 수가 리포지토리 호출 수만큼 늘어난다.
+ * jpashop.metrics.method-timers=false 로 끌 수 있다.
+ */
+@Component
+@ConditionalOnProperty(prefix = "jpashop.metrics", name = "method-timers", matchIfMissing = true)
+public class MethodTimerAspect extends AbstractPointcutAdvisor implements MethodInterceptor {
+
+    private static final long serialVersionUID = 1L;
+
+    static final String NAME = "jpashop.method";
+
+    //this()/target() 를 쓰면 호출마다 런타임 매칭을 해서 비용이 커지므로 선언 타입으로만 고른다.
+    //MemberNameFilter 처럼 row 마다 불리는 메모리 안의 helper 는 요청 단위 시간이 아니고 타이머 비용이 호출보다 크므로 뺀다.
+    static final String SERVICE_POINTCUT = "execution(public * jpabook.jpashop.service..*.*(..))" +
+            " && !within(jpabook.jpashop.service.MemberNameFilter)";
+    static final String REPOSITORY_POINTCUT = "execution(public * jpabook.jpashop.repository..*.*(..))" +
+            " || execution(public * org.springframework.data.repository.Repository+.*(..))";
+
+    //advisor 는 BeanPostProcessor 단계에서 일찍 만들어지므로 레지스트리는 처음 타이머를 만들 때 찾는다.
+    //(일찍 만들면 MeterRegistryPostProcessor 를 거치지 않아 설정과 글로벌 레지스트리 등록이 빠진다)
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final AspectJExpressionPointcut pointcut = new AspectJExpressionPointcut();
+    //프록시 클래스 -> 메서드 -> 정상 종료 타이머 (Spring Data 리포지토리는 구현 클래스가 모두 SimpleJpaRepository 라 프록시 기준)
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Method, Timer>> timers = new ConcurrentHashMap<>();
+
+    public MethodTimerAspect(ObjectProvider<MeterRegistry> meterRegistry,
+                             @Value("${jpashop.metrics.repository-timers:false}") boolean repositoryTimers) {
+        this.meterRegistry = meterRegistry;
+        this.pointcut.setExpression(repositoryTimers ? "(" + SERVICE_POINTCUT + ") || " + REPOSITORY_POINTCUT : SERVICE_POINTCUT);
+        setOrder(Ordered.HIGHEST_PRECEDENCE);
+    }
+
+    @Override
+    public Pointcut getPointcut() {
+        return pointcut;
+    }
+
+    @Override
+    public Advice getAdvice() {
+        return this;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = invocation.proceed();
+        } catch (Throwable e) {
+            timer(invocation, e.getClass().getSimpleName()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        timers.computeIfAbsent(proxyClass(invocation), type -> new ConcurrentHashMap<>())
+                .computeIfAbsent(invocation.getMethod(), m -> timer(invocation, "none"))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    private Timer timer(MethodInvocation invocation, String exception) {
+        return Timer.builder(NAME)
+                .tag("class", typeName(proxyClass(invocation)))
+                .tag("method", invocation.getMethod().getName())
+                .tag("exception", exception)
+                .register(meterRegistry.getObject());
+    }
+
+    private static Class<?> proxyClass(MethodInvocation invocation) {
+        return ((ProxyMethodInvocation) invocation).getProxy().getClass();
+    }
+
+    //CGLIB 프록시는 원래 클래스, JDK 프록시(Spring Data 리포지토리)는 애플리케이션 인터페이스 이름
+    private static String typeName(Class<?> proxyClass) {
+        if (Proxy.isProxyClass(proxyClass)) {
+            for (Class<?> type : proxyClass.getInterfaces()) {
+                if (type.getName().startsWith("jpabook.")) {
+                    return type.getSimpleName();
+                }
+            }
+        }
+        return ClassUtils.getUserClass(proxyClass).getSimpleName();
+    }
+}
@@ -0,0 +1,73 @@
+package jpabook.jpashop.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.Session;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.SessionStatistics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.persistence.EntityManagerFactory;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 영속성 컨텍스트 메트릭
+ * - 세션별 flush 시간/엔티티 수: SessionMetricsListener 를 hibernate.session.events.auto 로 등록
+ * - 요청별 영속성 컨텍스트 크기: jpashop.request.persistence-context.entities / collections {uri}
+ *   OSIV 가 요청 끝에 닫기 직전의 엔티티/컬렉션 수 (OSIV 를 끄면 요청 단위 영속성 컨텍스트가 없으므로 기록하지 않는다)
+ * jpashop.metrics.persistence-context=false 로 끌 수 있다.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "jpashop.metrics", name = "persistence-context", matchIfMissing = true)
+public class PersistenceContextMetricsConfig implements WebMvcConfigurer {
+
+    private final MeterRegistry meterRegistry;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public PersistenceContextMetricsConfig(MeterRegistry meterRegistry, EntityManagerFactory entityManagerFactory) {
+        this.meterRegistry = meterRegistry;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        //OSIV 인터셉터(order 0)보다 뒤에 등록해야 afterCompletion 이 영속성 컨텍스트가 닫히기 전에 호출된다.
+        registry.addInterceptor(new PersistenceContextSizeInterceptor()).order(Ordered.LOWEST_PRECEDENCE);
+    }
+
+    @Bean
+    public static HibernatePropertiesCustomizer sessionMetricsCustomizer() {
+        return properties -> properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, SessionMetricsListener.class.getName());
+    }
+
+    private class PersistenceContextSizeInterceptor implements HandlerInterceptor {
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+            EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(entityManagerFactory);
+            if (holder == null) {
+                return;
+            }
+            SessionStatistics statistics = holder.getEntityManager().unwrap(Session.class).getStatistics();
+            String uri = QueryCountFilter.uriOf(request);
+            DistributionSummary.builder("jpashop.request.persistence-context.entities")
+                    .tag("uri", uri)
+                    .register(meterRegistry)
+                    .record(statistics.getEntityCount());
+            DistributionSummary.builder("jpashop.request.persistence-context.collections")
+                    .tag("uri", uri)
+                    .register(meterRegistry)
+                    .record(statistics.getCollectionCount());
+        }
+    }
+}
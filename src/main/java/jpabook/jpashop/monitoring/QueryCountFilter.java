@@ -0,0 +1,82 @@
+package jpabook.jpashop.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP 요청 단위 SQL 집계
+ * - 요청 시작 시 QueryCounter 를 열고, 끝나면 Micrometer 로 기록한다. (uri 패턴별)
+ * - 같은 모양의 SQL 이 threshold 번 이상 반복되면 N+1 로 보고 경고 로그 + 카운터 증가
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "jpashop.query-monitor", name = "enabled", matchIfMissing = true)
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+    private final int nPlusOneThreshold;
+
+    public QueryCountFilter(MeterRegistry meterRegistry,
+                            @Value("${jpashop.query-monitor.n-plus-one-threshold:10}") int nPlusOneThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        QueryCounter counter = QueryCounter.begin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            QueryCounter.end();
+            record(uriOf(request), counter);
+        }
+    }
+
+    private void record(String uri, QueryCounter counter) {
+        DistributionSummary.builder("jpashop.request.sql.statements")
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(counter.getStatementCount());
+        DistributionSummary.builder("jpashop.request.sql.rows")
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(counter.getRowCount());
+        Timer.builder("jpashop.request.sql.time")
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(counter.getJdbcTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+
+        Map<String, Integer> repeated = counter.findRepeatedStatements(nPlusOneThreshold);
+        if (!repeated.isEmpty()) {
+            Counter.builder("jpashop.request.sql.n-plus-one")
+                    .tag("uri", uri)
+                    .register(meterRegistry)
+                    .increment();
+            repeated.forEach((sql, count) -> log.warn("N+1 의심: {} 에서 같은 SQL {}번 실행 - {}", uri, count, sql));
+        }
+    }
+
+    //고유 URL 대신 매핑된 패턴(/api/v2/members/{id})을 태그로 써서 메트릭 종류가 늘어나지 않게 한다.
+    static String uriOf(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "UNKNOWN";
+    }
+}
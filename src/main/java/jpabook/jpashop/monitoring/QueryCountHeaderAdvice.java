@@ -0,0 +1,49 @@
+package jpabook.jpashop.monitoring;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * API 응답 헤더로 SQL 집계 노출
+ * 본문을 쓰기 직전에 헤더를 붙이므로 @ResponseBody 응답에만 적용된다.
+ */
+@RestControllerAdvice
+@ConditionalOnProperty(prefix = "jpashop.query-monitor", name = "enabled", matchIfMissing = true)
+public class QueryCountHeaderAdvice implements ResponseBodyAdvice<Object> {
+
+    private final int nPlusOneThreshold;
+
+    public QueryCountHeaderAdvice(@Value("${jpashop.query-monitor.n-plus-one-threshold:10}") int nPlusOneThreshold) {
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        QueryCounter counter = QueryCounter.current();
+        if (counter != null) {
+            response.getHeaders().set("X-Query-Count", String.valueOf(counter.getStatementCount()));
+            response.getHeaders().set("X-Query-Rows", String.valueOf(counter.getRowCount()));
+            response.getHeaders().set("X-Query-Time-Ms", String.valueOf(counter.getJdbcTime(TimeUnit.MILLISECONDS)));
+            if (!counter.findRepeatedStatements(nPlusOneThreshold).isEmpty()) {
+                response.getHeaders().set("X-Query-N-Plus-One", "true");
+            }
+        }
+        return body;
+    }
+}
@@ -0,0 +1,81 @@
+package jpabook.jpashop.monitoring;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 요청(스레드) 하나 동안 실행된 SQL 집계
+ * - 실행 횟수, 읽은 row 수, JDBC 실행 시간
+ * - SQL 모양(PreparedStatement 문자열)별 실행 횟수: 같은 모양이 반복되면 N+1 의심
+ */
+public class QueryCounter {
+
+    private static final ThreadLocal<QueryCounter> CURRENT = new ThreadLocal<>();
+
+    private long statementCount;
+    private long rowCount;
+    private long jdbcNanos;
+    private final Map<String, Integer> statementShapes = new HashMap<>();
+
+    /**
+     * 현재 스레드에서 집계 시작
+     */
+    public static QueryCounter begin() {
+        QueryCounter counter = new QueryCounter();
+        CURRENT.set(counter);
+        return counter;
+    }
+
+    /**
+     * 집계 중이 아니면 null
+     */
+    public static QueryCounter current() {
+        return CURRENT.get();
+    }
+
+    public static QueryCounter end() {
+        QueryCounter counter = CURRENT.get();
+        CURRENT.remove();
+        return counter;
+    }
+
+    void recordStatement(String sql, long nanos) {
+        statementCount++;
+        jdbcNanos += nanos;
+        if (sql != null) {
+            statementShapes.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    void recordRow() {
+        rowCount++;
+    }
+
+    public long getStatementCount() {
+        return statementCount;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getJdbcTime(TimeUnit unit) {
+        return unit.convert(jdbcNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public Map<String, Integer> getStatementShapes() {
+        return Collections.unmodifiableMap(statementShapes);
+    }
+
+    /**
+     * threshold 번 이상 반복된 SQL 모양 (N+1 의심)
+     */
+    public Map<String, Integer> findRepeatedStatements(int threshold) {
+        return statementShapes.entrySet().stream()
+                .filter(e -> e.getValue() >= threshold)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+}
@@ -0,0 +1,54 @@
+package jpabook.jpashop.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.BaseSessionEventListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 세션(영속성 컨텍스트)별 flush 비용
+ * - jpashop.hibernate.flush{type=flush}: 커밋/명시적 flush (dirty checking + SQL 실행)
+ * - jpashop.hibernate.flush{type=auto}: 쿼리 전에 flush 가 필요한지 확인하는 dirty checking
+ * - jpashop.hibernate.flush.entities{type}: 그때 영속성 컨텍스트에 있던(dirty checking 한) 엔티티 수
+ * Hibernate 가 세션마다 기본 생성자로 만들기 때문에(hibernate.session.events.auto) 빈을 주입받을 수 없다.
+ * 그래서 Metrics.globalRegistry 에 기록한다. (스프링 부트가 컨텍스트의 MeterRegistry 를 global registry 에 추가한다
+ * - management.metrics.use-global-registry, 기본 true)
+ */
+public class SessionMetricsListener extends BaseSessionEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Timer flushTime = Timer.builder("jpashop.hibernate.flush").tag("type", "flush").register(Metrics.globalRegistry);
+    private static final Timer autoFlushTime = Timer.builder("jpashop.hibernate.flush").tag("type", "auto").register(Metrics.globalRegistry);
+    private static final DistributionSummary flushEntities =
+            DistributionSummary.builder("jpashop.hibernate.flush.entities").tag("type", "flush").register(Metrics.globalRegistry);
+    private static final DistributionSummary autoFlushEntities =
+            DistributionSummary.builder("jpashop.hibernate.flush.entities").tag("type", "auto").register(Metrics.globalRegistry);
+
+    private long flushStart;
+    private long partialFlushStart;
+
+    @Override
+    public void flushStart() {
+        flushStart = System.nanoTime();
+    }
+
+    @Override
+    public void flushEnd(int numberOfEntities, int numberOfCollections) {
+        flushTime.record(System.nanoTime() - flushStart, TimeUnit.NANOSECONDS);
+        flushEntities.record(numberOfEntities);
+    }
+
+    @Override
+    public void partialFlushStart() {
+        partialFlushStart = System.nanoTime();
+    }
+
+    @Override
+    public void partialFlushEnd(int numberOfEntities, int numberOfCollections) {
+        autoFlushTime.record(System.nanoTime() - partialFlushStart, TimeUnit.NANOSECONDS);
+        autoFlushEntities.record(numberOfEntities);
+    }
+}
@@ -2,6 +2,23 @@ package jpabook.jpashop.repository;
 
 import jpabook.jpashop.domain.item.Item;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.Optional;
 
 public interface ItemRepositoryV2 extends JpaRepository<Item, Long> {
+
+	// 상품 목록은 자주 읽고 드물게 바뀌므로 쿼리 캐시 사용 (item 테이블이 바뀌면 자동 무효화)
+	@Override
+	@QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.CACHEABLE, value = "true"))
+	List<Item> findAll();
+
+	// 재고를 바꾸는 쓰기 경로용: findById 와 달리 JPQL 은 2차 캐시를 보지 않고 항상 DB 를 조회한다.
+	// (영속성 컨텍스트에 이미 있는 상품이면 그 인스턴스를 돌려주므로 트랜잭션 시작 직후에 호출한다)
+	@Query("select i from Item i where i.id = :id")
+	Optional<Item> findLatestById(@Param("id") Long id);
 }
@@ -0,0 +1,247 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.Savepoint;
+import java.util.*;
+
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * 상품 재고를 DB 에서 원자적으로 차감/증가
+ * - 읽고-수정-쓰기(Item.removeStock 후 dirty checking) 대신 조건부 UPDATE 한 문장으로 재고 확인과 차감을 같이 한다.
+ *   같은 상품에 주문이 몰려도 초과 판매가 없고, 행 잠금은 UPDATE 한 문장 동안만 잡힌다.
+ * - JPQL 벌크 연산은 Item 2차 캐시 영역 전체를 비우므로 JDBC 로 실행하고, 해당 상품의 캐시 항목에만
+ *   Hibernate 가 엔티티를 UPDATE 할 때와 같은 READ_WRITE soft lock 을 UPDATE 전에 걸고 트랜잭션이 끝나면 푼다.
+ * - 이미 영속성 컨텍스트에 올라와 있는 상품은 다시 읽어서 DB 와 맞춘다.
+ * - @Version 도 같이 올려서, 재고를 읽고 고친 다른 트랜잭션(상품 수정 등)이 이 차감을 덮어쓰지 못하게 한다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ItemStockRepository {
+
+    private final EntityManager em;
+
+    /**
+     * 재고 차감
+     * 재고가 부족하면 아무것도 바꾸지 않고 NotEnoughStockException
+     */
+    public void removeStock(Long itemId, int quantity) {
+        lockCache(Collections.singletonList(itemId));
+        int updated = executeUpdate("update item set stock_quantity = stock_quantity - ?, version = version + 1 where item_id = ? and stock_quantity >= ?",
+                quantity, itemId, quantity);
+        if (updated != 1) {
+            if (em.find(Item.class, itemId) == null) {
+                throw new IllegalArgumentException("Item not found with id: " + itemId);
+            }
+            throw new NotEnoughStockException("need more stock");
+        }
+        synchronize(itemId);
+    }
+
+    /**
+     * 여러 상품 재고를 한 번에 차감 (장바구니 주문)
+     * - 조건부 UPDATE 를 JDBC 배치로 묶어 DB 왕복 한 번에 보낸다.
+     * - 상품 id 순서로 실행해서 동시에 들어온 장바구니끼리 데드락이 나지 않게 한다.
+     * - 하나라도 재고가 부족하면 NotEnoughStockException (이미 차감한 상품은 트랜잭션 롤백으로 되돌아간다)
+     * @param quantities 상품 id -> 수량
+     */
+    public void removeStocks(Map<Long, Integer> quantities) {
+        List<Long> itemIds = new ArrayList<>(new TreeSet<>(quantities.keySet()));
+
+        em.flush();
+        lockCache(itemIds);
+        int[] updated = executeRemoveBatch(itemIds, itemIds.stream().map(quantities::get).collect(toList()));
+
+        for (int i = 0; i < itemIds.size(); i++) {
+            if (updated[i] != 1) {
+                Long itemId = itemIds.get(i);
+                if (em.find(Item.class, itemId) == null) {
+                    throw new IllegalArgumentException("Item not found with id: " + itemId);
+                }
+                throw new NotEnoughStockException("need more stock");
+            }
+        }
+        itemIds.forEach(this::synchronize);
+    }
+
+    /**
+     * 주문마다 재고 차감 (묶음 주문 접수, 주문 하나가 실패해도 나머지는 차감)
+     * - 상품별로 수량을 합쳐 조건부 UPDATE 를 JDBC 배치 한 번에 보낸다. (상품 row 마다 UPDATE 한 번)
+     * - 합친 수량만큼 재고가 없는 상품만 주문 순서대로 한 건씩 조건부 UPDATE 를 다시 배치로 보낸다.
+     *   배치 안의 문장은 순서대로 실행되므로 앞 주문부터 남은 재고를 받는다.
+     * - 상품 id 순서로 실행해서 동시에 들어온 묶음끼리 데드락이 나지 않게 한다.
+     * @param itemIds 주문별 상품 id
+     * @param counts 주문별 수량
+     * @return 주문별 차감 여부 (false 면 재고 부족이거나 없는 상품)
+     */
+    public boolean[] removeStocksEach(List<Long> itemIds, List<Integer> counts) {
+        Map<Long, Integer> totals = new TreeMap<>();
+        for (int i = 0; i < itemIds.size(); i++) {
+            totals.merge(itemIds.get(i), counts.get(i), Integer::sum);
+        }
+        List<Long> totalIds = new ArrayList<>(totals.keySet());
+
+        em.flush();
+        lockCache(totalIds);
+        int[] updated = executeRemoveBatch(totalIds, new ArrayList<>(totals.values()));
+
+        Set<Long> shortItemIds = new HashSet<>();
+        for (int i = 0; i < totalIds.size(); i++) {
+            if (updated[i] != 1) {
+                shortItemIds.add(totalIds.get(i));
+            }
+        }
+        boolean[] removed = new boolean[itemIds.size()];
+        List<Integer> retries = new ArrayList<>();
+        for (int i = 0; i < itemIds.size(); i++) {
+            if (shortItemIds.contains(itemIds.get(i))) {
+                retries.add(i);
+            } else {
+                removed[i] = true;
+            }
+        }
+
+        if (!retries.isEmpty()) {
+            retries.sort(Comparator.comparing((Integer i) -> itemIds.get(i)).thenComparing(identity()));
+            int[] retried = executeRemoveBatch(
+                    retries.stream().map(itemIds::get).collect(toList()),
+                    retries.stream().map(counts::get).collect(toList()));
+            for (int i = 0; i < retries.size(); i++) {
+                removed[retries.get(i)] = retried[i] == 1;
+            }
+        }
+        totalIds.forEach(this::synchronize);
+        return removed;
+    }
+
+    /**
+     * 재고 증가
+     */
+    public void addStock(Long itemId, int quantity) {
+        lockCache(Collections.singletonList(itemId));
+        executeUpdate("update item set stock_quantity = stock_quantity + ?, version = version + 1 where item_id = ?", quantity, itemId);
+        synchronize(itemId);
+    }
+
+    /**
+     * 주문들의 주문상품 수량을 상품별로 합쳐서 재고를 한 번에 증가 (일괄 취소)
+     * - 상품 row 마다 한 번씩만 갱신되므로 같은 상품이 여러 주문에 있어도 UPDATE 는 한 문장
+     * - 어떤 상품이 바뀌는지 미리 알 수 없으므로 Item 2차 캐시 영역 전체를 비운다.
+     * @return 재고가 증가한 상품 수
+     */
+    public int addStocksOfOrders(Collection<Long> orderIds) {
+        return em.createNativeQuery(
+                "update item set stock_quantity = stock_quantity +" +
+                        " (select sum(oi.count) from order_item oi where oi.item_id = item.item_id and oi.order_id in (:orderIds))," +
+                        " version = version + 1" +
+                        " where item_id in (select oi.item_id from order_item oi where oi.order_id in (:orderIds))")
+                .setParameter("orderIds", orderIds)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Item.class) //지정하지 않으면 모든 2차 캐시 영역을 비운다.
+                .executeUpdate();
+    }
+
+    /**
+     * 재고 차감 UPDATE 를 배치로 실행하고 문장별 변경 row 수(0 또는 1)를 반환
+     * 드라이버가 정확한 row 수 대신 SUCCESS_NO_INFO(-2) 같은 값을 주면 어느 문장이 차감됐는지 알 수 없으므로
+     * 세이브포인트로 배치를 되돌리고 한 문장씩 다시 실행한다.
+     */
+    private int[] executeRemoveBatch(List<Long> itemIds, List<Integer> quantities) {
+        return em.unwrap(Session.class).doReturningWork(connection -> {
+            String sql = "update item set stock_quantity = stock_quantity - ?, version = version + 1 where item_id = ? and stock_quantity >= ?";
+            Savepoint savepoint = connection.setSavepoint();
+            int[] updated;
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (int i = 0; i < itemIds.size(); i++) {
+                    ps.setInt(1, quantities.get(i));
+                    ps.setLong(2, itemIds.get(i));
+                    ps.setInt(3, quantities.get(i));
+                    ps.addBatch();
+                }
+                updated = ps.executeBatch();
+            }
+            if (Arrays.stream(updated).allMatch(count -> count == 0 || count == 1)) {
+                connection.releaseSavepoint(savepoint);
+                return updated;
+            }
+
+            connection.rollback(savepoint);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (int i = 0; i < itemIds.size(); i++) {
+                    ps.setInt(1, quantities.get(i));
+                    ps.setLong(2, itemIds.get(i));
+                    ps.setInt(3, quantities.get(i));
+                    updated[i] = ps.executeUpdate();
+                }
+            }
+            return updated;
+        });
+    }
+
+    private int executeUpdate(String sql, Object... params) {
+        em.flush(); //같은 트랜잭션에서 저장한 상품이 아직 DB 에 없을 수 있다.
+        return em.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (int i = 0; i < params.length; i++) {
+                    ps.setObject(i + 1, params[i]);
+                }
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * 상품들의 Item 2차 캐시 항목에 soft lock 을 걸고, 트랜잭션이 끝나면 (커밋/롤백 모두) 푼다.
+     * 잠긴 동안에는 캐시를 읽지 않고, 잠금이 풀린 시각보다 먼저 시작한 세션은 읽은 값을 캐시에 올리지 못한다.
+     * 그래서 커밋 전 값을 DB 에서 읽은 다른 트랜잭션이 이전 재고/버전을 캐시에 다시 올리지 못한다.
+     * (캐시에 있던 항목을 잠그면 그 버전보다 큰 버전만 다시 올라가므로, 롤백하면 잠금 timeout 까지는 DB 에서 읽는다. Hibernate 의 엔티티 UPDATE 와 같다)
+     */
+    private void lockCache(Collection<Long> itemIds) {
+        SharedSessionContractImplementor session = em.unwrap(SharedSessionContractImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Item.class);
+        EntityDataAccess cache = persister.getCacheAccessStrategy();
+        if (cache == null) {
+            return;
+        }
+
+        Map<Object, SoftLock> locks = new LinkedHashMap<>();
+        for (Long itemId : itemIds) {
+            Object key = cache.generateCacheKey(itemId, persister, session.getFactory(), session.getTenantIdentifier());
+            locks.put(key, cache.lockItem(session, key, null)); //version 없이 잠그면 잠금이 풀린 시각으로만 판단한다.
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            locks.forEach((key, lock) -> cache.unlockItem(session, key, lock));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                locks.forEach((key, lock) -> cache.unlockItem(session, key, lock));
+            }
+        });
+    }
+
+    //getReference 는 영속성 컨텍스트에 있으면 그 엔티티를, 없으면 초기화 안 된 프록시를 반환 (SQL 없음)
+    private void synchronize(Long itemId) {
+        Item item = em.getReference(Item.class, itemId);
+        if (Hibernate.isInitialized(item)) {
+            em.refresh(item);
+        }
+    }
+}
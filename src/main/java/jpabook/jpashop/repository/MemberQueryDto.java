@@ -0,0 +1,15 @@
+package jpabook.jpashop.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 회원 목록용 DTO (엔티티 대신 필요한 컬럼만 조회)
+ */
+@Data
+@AllArgsConstructor
+public class MemberQueryDto {
+
+    private Long id;
+    private String name;
+}
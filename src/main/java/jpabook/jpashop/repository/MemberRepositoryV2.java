@@ -1,10 +1,49 @@
 package jpabook.jpashop.repository;
 
 import jpabook.jpashop.domain.Member;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface MemberRepositoryV2 extends JpaRepository<Member, Long> {
+
+	// 회원 목록은 자주 읽고 드물게 바뀌므로 쿼리 캐시 사용 (member 테이블이 바뀌면 자동 무효화)
+	@Override
+	@QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.CACHEABLE, value = "true"))
+	List<Member> findAll();
+
 	List<Member> findByName(String name);
+
+	// 중복 확인용: 엔티티를 읽지 않고 유니크 인덱스만 확인 (limit 1)
+	boolean existsByName(String name);
+
+	// 일괄 등록용: 여러 이름 중 이미 있는 이름만 (유니크 인덱스 조회 한 번)
+	@Query("select m.name from Member m where m.name in :names")
+	List<String> findExistingNames(@Param("names") Collection<String> names);
+
+	// 이름 필터(MemberNameFilter) 채우기용
+	@QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.FETCH_SIZE, value = "1000"))
+	@Query("select m.name from Member m")
+	Stream<String> streamNames();
+
+	// 목록용: 엔티티 대신 필요한 컬럼만 생성자 DTO 로 (영속성 컨텍스트, 스냅샷, Address/orders 프록시 없음)
+	@Query("select new jpabook.jpashop.repository.MemberQueryDto(m.id, m.name) from Member m order by m.id")
+	List<MemberQueryDto> findAllDtos();
+
+	// 스트리밍용: lastId 이후 id 순으로 커서에서 fetch size 만큼씩 읽는다. (트랜잭션 안에서 사용하고 close)
+	@QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.FETCH_SIZE, value = "1000"))
+	@Query("select new jpabook.jpashop.repository.MemberQueryDto(m.id, m.name) from Member m where m.id > :lastId order by m.id")
+	Stream<MemberQueryDto> streamDtosAfter(@Param("lastId") Long lastId);
+
+	// 페이지용: 위와 같지만 pageable 크기만큼만 읽도록 SQL 에 limit 을 건다.
+	@QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.FETCH_SIZE, value = "1000"))
+	@Query("select new jpabook.jpashop.repository.MemberQueryDto(m.id, m.name) from Member m where m.id > :lastId order by m.id")
+	Stream<MemberQueryDto> streamDtosAfter(@Param("lastId") Long lastId, Pageable pageable);
 }
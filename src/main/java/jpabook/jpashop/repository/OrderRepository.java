@@ -1,25 +1,46 @@
 package jpabook.jpashop.repository;
 
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.repository.query.QueryUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 @Repository
+@Transactional(readOnly = true) //목록 조회는 복제 DB 로 (ReplicaRoutingDataSource)
 public class OrderRepository {
 
     private final EntityManager em;
+    private final int inClauseChunkSize;
+    private final int maxSearchMemberIds;
 
-    public OrderRepository(EntityManager em) {
+    public OrderRepository(EntityManager em,
+                           @Value("${jpashop.order-query.in-clause-chunk-size:512}") int inClauseChunkSize,
+                           @Value("${jpashop.order-query.search-max-member-ids:2048}") int maxSearchMemberIds) {
         this.em = em;
+        this.inClauseChunkSize = inClauseChunkSize;
+        this.maxSearchMemberIds = maxSearchMemberIds;
     }
 
+    @Transactional
     public void save(Order order) {
         em.persist(order);
     }
@@ -28,6 +49,74 @@ public class OrderRepository {
         return em.find(Order.class, id);
     }
 
+    /**
+     * 주문 취소용: 배송, 주문상품을 한번에 조회
+     * 재고는 ItemStockRepository 가 상품 id 로 되돌리므로 상품은 프록시로 둔다.
+     */
+    public Order findOneWithItems(Long id) {
+        return em.createQuery(
+                "select distinct o from Order o" +
+                        " join fetch o.delivery d" +
+                        " join fetch o.orderItems oi" +
+                        " where o.id = :id", Order.class)
+                .setParameter("id", id)
+                .getSingleResult();
+    }
+
+    /**
+     * 일괄 취소용: 취소 가능한(ORDER 상태, 배송완료 전) 주문 id 를 골라서 행 잠금
+     * 잠근 주문은 트랜잭션이 끝날 때까지 다른 취소/배송완료 처리와 겹치지 않는다.
+     */
+    @Transactional
+    public List<Long> findCancelableIdsForUpdate(Collection<Long> orderIds) {
+        return em.createQuery(
+                "select o.id from Order o" +
+                        " join o.delivery d" +
+                        " where o.id in :orderIds" +
+                        " and o.status = :status" +
+                        " and d.status <> :comp" +
+                        " order by o.id", Long.class)
+                .setParameter("orderIds", orderIds)
+                .setParameter("status", OrderStatus.ORDER)
+                .setParameter("comp", DeliveryStatus.COMP)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    /**
+     * 일괄 취소용: 검색 조건에 맞는 ORDER 상태 주문 id 를 lastOrderId 이후로 limit 개 (키셋)
+     * 검색 조건의 주문 상태는 무시한다.
+     * 회원 이름은 완전 일치만 본다. (like 로 두면 '%' 한 글자로 모든 회원의 주문이 취소된다)
+     */
+    public List<Long> findCancelableIds(OrderSearch orderSearch, Long lastOrderId, int limit) {
+        boolean hasName = StringUtils.hasText(orderSearch.getMemberName());
+        TypedQuery<Long> query = em.createQuery(
+                "select o.id from Order o" +
+                        (hasName ? " join o.member m" : "") +
+                        " where o.id > :lastOrderId" +
+                        " and o.status = :status" +
+                        (hasName ? " and m.name = :name" : "") +
+                        " order by o.id", Long.class)
+                .setParameter("lastOrderId", lastOrderId)
+                .setParameter("status", OrderStatus.ORDER)
+                .setMaxResults(limit);
+        if (hasName) {
+            query.setParameter("name", orderSearch.getMemberName());
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * 주문 상태를 한 번에 취소로 변경 (벌크 연산이므로 영속성 컨텍스트의 주문에는 반영되지 않는다)
+     */
+    @Transactional
+    public int cancelAll(Collection<Long> orderIds) {
+        return em.createQuery("update Order o set o.status = :status, o.version = o.version + 1 where o.id in :orderIds")
+                .setParameter("status", OrderStatus.CANCEL)
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+    }
+
     public List<Order> findAll() {
         return em.createQuery("select o from Order o", Order.class)
                 .getResultList();
@@ -101,6 +190,116 @@ public class OrderRepository {
         return query.getResultList();
     }
 
+    /**
+     * 주문 검색 (회원, 배송 페치 조인)
+     * - 조건이 있는 항목만 where 절에 추가한다.
+     * - 기본은 최신 주문부터 정렬: orders(status, order_date) 인덱스로 상태 + 기간 조건과 정렬을 같이 처리
+     * - 회원 이름은 앞부분/완전 일치만 지원하고, member(name) 인덱스로 회원 id 를 먼저 찾아 IN 절(in-clause-chunk-size 씩 나눠 OR)로 건다.
+     *   이름에 걸리는 회원이 search-max-member-ids 보다 많으면 이름 조건이 거르는 것이 적으므로 페치 조인한 회원에 조건을 건다.
+     * - count 쿼리 대신 size + 1 건을 조회해서 다음 페이지 여부만 판단한다. (Slice)
+     */
+    public Slice<Order> search(OrderSearch orderSearch, Pageable pageable) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Order> cq = cb.createQuery(Order.class);
+        Root<Order> o = cq.from(Order.class);
+        @SuppressWarnings("unchecked")
+        Join<Order, Member> m = (Join<Order, Member>) o.<Order, Member>fetch("member", JoinType.INNER);
+        o.fetch("delivery", JoinType.INNER);
+
+        List<Predicate> criteria = new ArrayList<>();
+
+        //주문 상태, 주문시간 검색
+        if (orderSearch.getOrderStatus() != null) {
+            criteria.add(cb.equal(o.get("status"), orderSearch.getOrderStatus()));
+        }
+        if (orderSearch.getOrderDateFrom() != null) {
+            criteria.add(cb.greaterThanOrEqualTo(o.get("orderDate"), orderSearch.getOrderDateFrom()));
+        }
+        if (orderSearch.getOrderDateTo() != null) {
+            criteria.add(cb.lessThan(o.get("orderDate"), orderSearch.getOrderDateTo()));
+        }
+
+        //회원 검색
+        if (orderSearch.getMemberId() != null) {
+            criteria.add(cb.equal(o.get("member").get("id"), orderSearch.getMemberId()));
+        }
+        if (StringUtils.hasText(orderSearch.getMemberName())) {
+            //이름으로 회원 id 를 먼저 찾는다. 조인 조건으로 두면 DB 가 주문 상태 인덱스부터 읽고 회원 이름을 나중에 거른다. (주문 100만 건에서 ~760 ms, id IN 절은 ~0.7 ms)
+            List<Long> memberIds = findMemberIdsByName(orderSearch.getMemberName(), orderSearch.getNameMatch(), maxSearchMemberIds + 1);
+            if (memberIds.isEmpty()) {
+                return new SliceImpl<>(Collections.emptyList(), pageable, false);
+            }
+            if (memberIds.size() <= maxSearchMemberIds) {
+                List<Predicate> chunks = new ArrayList<>();
+                for (int i = 0; i < memberIds.size(); i += inClauseChunkSize) {
+                    chunks.add(o.get("member").get("id").in(memberIds.subList(i, Math.min(i + inClauseChunkSize, memberIds.size()))));
+                }
+                criteria.add(cb.or(chunks.toArray(new Predicate[0])));
+            } else if (orderSearch.getNameMatch() == OrderSearch.NameMatch.EXACT) {
+                criteria.add(cb.equal(m.get("name"), orderSearch.getMemberName()));
+            } else {
+                criteria.add(cb.like(m.<String>get("name"), escapeLike(orderSearch.getMemberName()) + "%", '\\'));
+            }
+        }
+
+        //상품 검색
+        if (orderSearch.getItemId() != null) {
+            Subquery<Long> sq = cq.subquery(Long.class);
+            Root<OrderItem> oi = sq.from(OrderItem.class);
+            sq.select(oi.get("id"))
+                    .where(cb.equal(oi.get("order"), o), cb.equal(oi.get("item").get("id"), orderSearch.getItemId()));
+            criteria.add(cb.exists(sq));
+        }
+
+        //전체 주문 가격 검색 (orders.total_price, 주문상품을 읽지 않는다)
+        if (orderSearch.getMinTotalPrice() != null) {
+            criteria.add(cb.greaterThanOrEqualTo(o.get("totalPrice"), orderSearch.getMinTotalPrice()));
+        }
+        if (orderSearch.getMaxTotalPrice() != null) {
+            criteria.add(cb.lessThanOrEqualTo(o.get("totalPrice"), orderSearch.getMaxTotalPrice()));
+        }
+
+        //정렬: 지정하지 않으면 최신 주문부터 (예: Sort.by(DESC, "totalPrice"))
+        List<javax.persistence.criteria.Order> orderBy = new ArrayList<>(QueryUtils.toOrders(pageable.getSort(), o, cb));
+        if (orderBy.isEmpty()) {
+            orderBy.add(cb.desc(o.get("orderDate")));
+        }
+        orderBy.add(cb.desc(o.get("id")));
+
+        cq.where(criteria.toArray(new Predicate[0]))
+                .orderBy(orderBy);
+
+        List<Order> content = em.createQuery(cq)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+
+        boolean hasNext = content.size() > pageable.getPageSize();
+        if (hasNext) {
+            content = content.subList(0, pageable.getPageSize());
+        }
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    /**
+     * member(name) 인덱스로 회원 id 조회 (앞부분 일치 또는 완전 일치, 최대 limit 개)
+     */
+    private List<Long> findMemberIdsByName(String name, OrderSearch.NameMatch nameMatch, int limit) {
+        TypedQuery<Long> query;
+        if (nameMatch == OrderSearch.NameMatch.EXACT) {
+            query = em.createQuery("select m.id from Member m where m.name = :name", Long.class)
+                    .setParameter("name", name);
+        } else {
+            query = em.createQuery("select m.id from Member m where m.name like :name escape '\\'", Long.class)
+                    .setParameter("name", escapeLike(name) + "%");
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
     public List<Order> findAllWithMemberDelivery() {
         return em.createQuery(
                 "select o from Order o" +
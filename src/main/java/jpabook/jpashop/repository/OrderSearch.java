@@ -3,10 +3,33 @@ package jpabook.jpashop.repository;
 import jpabook.jpashop.domain.OrderStatus;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
 
 @Getter @Setter
 public class OrderSearch {
 
     private String memberName; //회원 이름
+    private NameMatch nameMatch = NameMatch.PREFIX; //회원 이름 검색 방식
     private OrderStatus orderStatus; //주문 상태[ORDER, CANCEL]
+
+    private Long memberId; //회원 id
+    private Long itemId; //주문상품에 포함된 상품 id
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime orderDateFrom; //주문시간 (이상)
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime orderDateTo; //주문시간 (미만)
+
+    private Integer minTotalPrice; //전체 주문 가격 (이상)
+    private Integer maxTotalPrice; //전체 주문 가격 (이하)
+
+    /**
+     * 회원 이름 검색 방식
+     * 앞부분 일치(like 'kim%')와 완전 일치만 지원한다. ('%kim%' 는 member.name 인덱스를 탈 수 없다)
+     */
+    public enum NameMatch {
+        PREFIX, EXACT
+    }
 }
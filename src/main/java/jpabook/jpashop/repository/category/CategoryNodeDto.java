@@ -0,0 +1,16 @@
+package jpabook.jpashop.repository.category;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 카테고리 row (트리를 만들 때 필요한 컬럼만)
+ */
+@Data
+@AllArgsConstructor
+public class CategoryNodeDto {
+
+    private Long id;
+    private String name;
+    private Long parentId;
+}
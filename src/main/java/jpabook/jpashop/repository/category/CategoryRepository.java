@@ -0,0 +1,63 @@
+package jpabook.jpashop.repository.category;
+
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.item.Item;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class CategoryRepository {
+
+    private final EntityManager em;
+
+    public void save(Category category) {
+        em.persist(category);
+    }
+
+    public Category findOne(Long id) {
+        return em.find(Category.class, id);
+    }
+
+    /**
+     * 카테고리 조회 + 행 잠금 (select ... for update, 2차 캐시를 거치지 않고 DB 에서 읽는다)
+     */
+    public Category findOneForUpdate(Long id) {
+        List<Category> result = em.createQuery("select c from Category c where c.id = :id", Category.class)
+                .setParameter("id", id)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * 카테고리 전체를 쿼리 한 번으로 조회 (parent 는 FK 컬럼만 읽고 조인하지 않는다)
+     */
+    public List<CategoryNodeDto> findAllNodes() {
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.category.CategoryNodeDto(c.id, c.name, c.parent.id)" +
+                        " from Category c" +
+                        " order by c.name, c.id", CategoryNodeDto.class)
+                .getResultList();
+    }
+
+    /**
+     * 카테고리들에 속한 상품 (여러 카테고리에 속한 상품은 한 번만)
+     * category_item(category_id, item_id) 인덱스만 읽고 상품을 id 로 찾는다.
+     */
+    public List<Item> findItems(Collection<Long> categoryIds, int offset, int limit) {
+        return em.createQuery(
+                "select distinct i from Item i join i.categories c" +
+                        " where c.id in :categoryIds" +
+                        " order by i.id", Item.class)
+                .setParameter("categoryIds", categoryIds)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
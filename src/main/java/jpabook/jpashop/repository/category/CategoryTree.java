@@ -0,0 +1,143 @@
+package jpabook.jpashop.repository.category;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * 카테고리 전체 트리 (불변, CategoryService 가 캐시한다)
+ * - 카테고리 row 전체(CategoryRepository.findAllNodes)로 한 번에 만든다. parent/child 연관관계를 따라 레벨마다 조회하지 않는다.
+ * - 전위 순회 순서로 id 를 저장하고 노드마다 자기 구간 [start, end) 를 기억한다.
+ *   하위 카테고리 전체는 subList 한 번, 조상/자손 판단은 구간 비교 한 번
+ * - 부모가 없는 카테고리(또는 없는 부모를 가리키는 카테고리)가 최상위, 순환에 걸린 카테고리는 트리에 넣지 않는다.
+ */
+@Getter
+public class CategoryTree {
+
+    private final long version;
+    private final List<Node> roots;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<Long, Node> nodes;
+    @Getter(AccessLevel.NONE)
+    private final List<Long> preorder;
+
+    private CategoryTree(long version, List<Node> roots, Map<Long, Node> nodes, List<Long> preorder) {
+        this.version = version;
+        this.roots = roots;
+        this.nodes = nodes;
+        this.preorder = preorder;
+    }
+
+    public static CategoryTree build(long version, List<CategoryNodeDto> rows) {
+        Map<Long, Node> all = new HashMap<>();
+        for (CategoryNodeDto row : rows) {
+            all.put(row.getId(), new Node(row.getId(), row.getName(), row.getParentId()));
+        }
+
+        List<Node> roots = new ArrayList<>();
+        for (CategoryNodeDto row : rows) { //rows 순서(이름순)대로 자식 목록을 만든다.
+            Node node = all.get(row.getId());
+            Node parent = row.getParentId() == null ? null : all.get(row.getParentId());
+            if (parent == null) {
+                roots.add(node);
+            } else {
+                parent.children.add(node);
+            }
+        }
+
+        //깊은 트리에서도 스택이 넘치지 않게 재귀 대신 명시적 스택으로 전위 순회
+        Map<Long, Node> nodes = new HashMap<>();
+        List<Long> preorder = new ArrayList<>(all.size());
+        Deque<Node> stack = new ArrayDeque<>();
+        for (Node root : roots) {
+            root.enter(0, preorder);
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                Node node = stack.peek();
+                if (node.visited < node.children.size()) {
+                    Node child = node.children.get(node.visited++);
+                    child.enter(node.depth + 1, preorder);
+                    stack.push(child);
+                } else {
+                    node.end = preorder.size();
+                    node.children = Collections.unmodifiableList(node.children);
+                    nodes.put(node.id, node);
+                    stack.pop();
+                }
+            }
+        }
+        return new CategoryTree(version, Collections.unmodifiableList(roots), nodes, Collections.unmodifiableList(preorder));
+    }
+
+    public Optional<Node> find(Long id) {
+        return Optional.ofNullable(nodes.get(id));
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * 자신을 포함한 하위 카테고리 id 전체 (전위 순회 순서)
+     */
+    public List<Long> descendantIds(Long id) {
+        Node node = getNode(id);
+        return preorder.subList(node.start, node.end);
+    }
+
+    /**
+     * id 가 ancestorId 자신이거나 그 하위 카테고리인지
+     */
+    public boolean isDescendant(Long id, Long ancestorId) {
+        Node node = getNode(id);
+        Node ancestor = getNode(ancestorId);
+        return ancestor.start <= node.start && node.start < ancestor.end;
+    }
+
+    /**
+     * 최상위부터 자신까지 경로
+     */
+    public List<Node> path(Long id) {
+        LinkedList<Node> path = new LinkedList<>();
+        for (Node node = getNode(id); node != null; node = node.parentId == null ? null : nodes.get(node.parentId)) {
+            path.addFirst(node);
+        }
+        return path;
+    }
+
+    private Node getNode(Long id) {
+        Node node = nodes.get(id);
+        if (node == null) {
+            throw new IllegalArgumentException("Category not found with id: " + id);
+        }
+        return node;
+    }
+
+    @Getter
+    public static class Node {
+
+        private final Long id;
+        private final String name;
+        private final Long parentId;
+        private int depth;
+        private List<Node> children = new ArrayList<>();
+
+        @Getter(AccessLevel.NONE) private int start; //전위 순회 구간
+        @Getter(AccessLevel.NONE) private int end;
+        @Getter(AccessLevel.NONE) private int visited; //만들 때만 사용
+
+        private Node(Long id, String name, Long parentId) {
+            this.id = id;
+            this.name = name;
+            this.parentId = parentId;
+        }
+
+        private void enter(int depth, List<Long> preorder) {
+            this.depth = depth;
+            this.start = preorder.size();
+            preorder.add(id);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package jpabook.jpashop.repository.journal;
+
+import jpabook.jpashop.domain.journal.OrderJournalResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+
+@Repository
+@RequiredArgsConstructor
+public class OrderJournalRepository {
+
+    private final EntityManager em;
+
+    /**
+     * seq 를 직접 정하므로 merge(select 후 insert) 대신 persist (JDBC 배치로 묶인다)
+     */
+    public void save(OrderJournalResult result) {
+        em.persist(result);
+    }
+
+    public OrderJournalResult findOne(String journalId, long seq) {
+        return em.find(OrderJournalResult.class, new OrderJournalResult.Key(journalId, seq));
+    }
+
+    /**
+     * 이 저널에서 마지막으로 반영한 순번 (없으면 0)
+     */
+    public long findLastSeq(String journalId) {
+        Long seq = em.createQuery("select max(r.seq) from OrderJournalResult r where r.journalId = :journalId", Long.class)
+                .setParameter("journalId", journalId)
+                .getSingleResult();
+        return seq == null ? 0 : seq;
+    }
+
+    /**
+     * 이 저널의 순번 범위에 이미 있는 결과 수 (반영이 롤백된 묶음에 대해 호출하면 다른 노드가 쓴 결과만 남는다)
+     */
+    public long countInRange(String journalId, long fromSeq, long toSeq) {
+        return em.createQuery("select count(r) from OrderJournalResult r" +
+                        " where r.journalId = :journalId and r.seq between :fromSeq and :toSeq", Long.class)
+                .setParameter("journalId", journalId)
+                .setParameter("fromSeq", fromSeq)
+                .setParameter("toSeq", toSeq)
+                .getSingleResult();
+    }
+}
@@ -2,8 +2,10 @@ package jpabook.jpashop.repository.order;
 
 import jpabook.jpashop.domain.Order;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
@@ -22,4 +24,11 @@ public interface OrderRepositoryV2 extends JpaRepository<Order,Long> {
 	@Query("select o from Order o join fetch o.member m join fetch o.delivery d")
 	List<Order> findAllWithMemberDelivery(Pageable pageable);
 
+	// 키셋(seek) 페이징: offset 만큼 읽고 버리지 않고 PK 인덱스로 바로 다음 위치를 찾는다.
+	// Slice 는 count 쿼리 없이 limit + 1 건을 조회해서 다음 페이지 존재 여부만 판단한다.
+	@Query("select o from Order o join fetch o.member m join fetch o.delivery d" +
+			" where o.id > :lastOrderId" +
+			" order by o.id")
+	Slice<Order> findAllWithMemberDeliveryAfter(@Param("lastOrderId") Long lastOrderId, Pageable pageable);
+
 }
@@ -0,0 +1,54 @@
+package jpabook.jpashop.repository.order.query;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * order_id 순으로 정렬된 플랫 row 를 주문 단위로 묶는다.
+ * - SQL 의 order by o.id 를 이용해서 order_id 가 바뀌는 순간 이전 주문을 닫는다. (HashMap 불필요, 정렬 순서 유지)
+ * - 주문마다 OrderQueryDto 를 한 번만 만든다.
+ * - Iterator 이므로 커서 스트림에도 그대로 사용할 수 있다.
+ */
+public class OrderFlatGrouper implements Iterator<OrderQueryDto> {
+
+    private final Iterator<OrderFlatDto> rows;
+    private OrderFlatDto lookahead; //다음 주문의 첫 row
+
+    public OrderFlatGrouper(Iterator<OrderFlatDto> rows) {
+        this.rows = rows;
+        this.lookahead = rows.hasNext() ? rows.next() : null;
+    }
+
+    public static List<OrderQueryDto> group(List<OrderFlatDto> rows) {
+        List<OrderQueryDto> result = new ArrayList<>();
+        new OrderFlatGrouper(rows.iterator()).forEachRemaining(result::add);
+        return result;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return lookahead != null;
+    }
+
+    @Override
+    public OrderQueryDto next() {
+        if (lookahead == null) {
+            throw new NoSuchElementException();
+        }
+        OrderFlatDto first = lookahead;
+        List<OrderItemQueryDto> orderItems = new ArrayList<>();
+        OrderQueryDto order = new OrderQueryDto(first.getOrderId(), first.getName(), first.getOrderDate(), first.getOrderStatus(), first.getAddress(),
+                first.getTotalPrice(), first.getItemCount(), orderItems);
+
+        OrderFlatDto row = first;
+        do {
+            orderItems.add(new OrderItemQueryDto(row.getOrderId(), row.getItemName(), row.getOrderPrice(), row.getCount()));
+            row = rows.hasNext() ? rows.next() : null;
+        } while (row != null && row.getOrderId().equals(first.getOrderId()));
+
+        lookahead = row;
+        return order;
+    }
+}
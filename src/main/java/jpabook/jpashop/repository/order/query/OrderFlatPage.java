@@ -0,0 +1,19 @@
+package jpabook.jpashop.repository.order.query;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 플랫 데이터 한 페이지
+ * 주문상품이 없는 주문은 플랫 row 가 없으므로 다음 페이지 여부와 커서는 flats 가 아니라 id 페이지로 판단한다.
+ */
+@Getter
+@AllArgsConstructor
+public class OrderFlatPage {
+
+    private final List<OrderFlatDto> flats;
+    private final boolean last; //다음 주문이 없으면 true (limit + 1 번째 id 로 확인)
+    private final Long lastOrderId; //id 페이지의 마지막 주문 id (비었으면 null)
+}
@@ -17,22 +17,22 @@ public class OrderQueryDto {
     private LocalDateTime orderDate; //주문시간
     private OrderStatus orderStatus;
     private Address address;
+    private int totalPrice; //전체 주문 가격
+    private int itemCount; //전체 주문 수량
     private List<OrderItemQueryDto> orderItems;
 
-    public OrderQueryDto(Long orderId, String name, LocalDateTime orderDate, OrderStatus orderStatus, Address address) {
+    public OrderQueryDto(Long orderId, String name, LocalDateTime orderDate, OrderStatus orderStatus, Address address, int totalPrice, int itemCount) {
         this.orderId = orderId;
         this.name = name;
         this.orderDate = orderDate;
         this.orderStatus = orderStatus;
         this.address = address;
+        this.totalPrice = totalPrice;
+        this.itemCount = itemCount;
     }
 
-    public OrderQueryDto(Long orderId, String name, LocalDateTime orderDate, OrderStatus orderStatus, Address address, List<OrderItemQueryDto> orderItems) {
-        this.orderId = orderId;
-        this.name = name;
-        this.orderDate = orderDate;
-        this.orderStatus = orderStatus;
-        this.address = address;
+    public OrderQueryDto(Long orderId, String name, LocalDateTime orderDate, OrderStatus orderStatus, Address address, int totalPrice, int itemCount, List<OrderItemQueryDto> orderItems) {
+        this(orderId, name, orderDate, orderStatus, address, totalPrice, itemCount);
         this.orderItems = orderItems;
     }
 }
\ No newline at end of file
@@ -1,18 +1,79 @@
 package jpabook.jpashop.repository.order.query;
 
-import lombok.RequiredArgsConstructor;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PreDestroy;
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository
-@RequiredArgsConstructor
+@Transactional(readOnly = true) //복제 DB 로 (ReplicaRoutingDataSource)
 public class OrderQueryRepository {
 
     private final EntityManager em;
+    private final TransactionTemplate readOnlyTx;
+    private final TransactionTemplate noTx; //호출한 트랜잭션을 잠시 중단
+    private final int inClauseChunkSize;
+    private final boolean chunkParallel; //true 면 IN 청크를 별도 커넥션에서 동시에 조회
+    private final ExecutorService queryExecutor; //별도 커넥션 조회용 (청크 병렬 조회, 병렬 조립)
+
+    public OrderQueryRepository(EntityManager em, PlatformTransactionManager transactionManager,
+                                @Value("${jpashop.order-query.in-clause-chunk-size:512}") int inClauseChunkSize,
+                                @Value("${jpashop.order-query.chunk-parallelism:0}") int chunkParallelism,
+                                @Value("${jpashop.order-query.assembly-parallelism:0}") int assemblyParallelism,
+                                @Value("${jpashop.order-query.queue-capacity:1000}") int queueCapacity,
+                                @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connectionPoolSize) {
+        this.em = em;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.noTx = new TransactionTemplate(transactionManager);
+        this.noTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+        this.inClauseChunkSize = inClauseChunkSize;
+        this.chunkParallel = chunkParallelism > 1;
+
+        //작업 하나가 커넥션 하나를 쓰므로 스레드 수로 동시에 쓰는 커넥션 수를 제한한다. (요청 처리용 커넥션을 남기도록 풀의 절반까지)
+        int connectionCap = Math.max(1, connectionPoolSize / 2);
+        int threads = Math.min(Math.max(chunkParallelism, assemblyParallelism > 0 ? assemblyParallelism : connectionCap), connectionCap);
+        //대기 작업도 queue-capacity 까지만 쌓고, 넘치면 호출 스레드가 직접 실행한다. (그만큼 호출 스레드가 느려져서 요청 유입이 줄어든다)
+        //CallerRunsPolicy 는 종료 후 작업을 조용히 버려서 join 하는 호출자가 끝나지 않으므로 종료 후에는 예외로 거절한다.
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.queryExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "order-query-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, (task, executor) -> {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("order-query executor has been shut down");
+            }
+            task.run();
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        queryExecutor.shutdown();
+    }
 
     /**
      * 컬렉션은 별도로 조회
@@ -31,12 +92,33 @@ public class OrderQueryRepository {
         return result;
     }
 
+    /**
+     * V4 병렬 조립: findOrderQueryDtos 와 같은 1 + N 쿼리를 queryExecutor 에서 동시에 실행
+     * - 주문마다 컬렉션 조회가 꼭 따로 필요할 때(주문별 외부 호출 등) 지연 시간을 N 번의 합에서 약 N / 스레드 수 로 줄인다.
+     *   같은 데이터라면 1 + 1 쿼리(findAllByDto_optimization)가 항상 더 빠르다.
+     * - 조회는 모두 작업 스레드의 읽기 전용 트랜잭션(별도 커넥션, 복제 DB 대상)에서 한다.
+     *   호출 스레드는 커넥션을 잡지 않고 기다리기만 하므로 요청이 몰려도 커넥션 풀이 고갈되어 서로 기다리는 일이 없다.
+     * - 결과는 루트 조회 순서 그대로 (주문 i 의 컬렉션은 i 번째 작업 결과)
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<OrderQueryDto> findOrderQueryDtos_parallel() {
+        List<OrderQueryDto> result = inReadOnlyTransaction(this::findOrders).join();
+
+        List<CompletableFuture<List<OrderItemQueryDto>>> orderItems = result.stream()
+                .map(o -> inReadOnlyTransaction(() -> findOrderItems(o.getOrderId())))
+                .collect(Collectors.toList());
+        for (int i = 0; i < result.size(); i++) {
+            result.get(i).setOrderItems(orderItems.get(i).join());
+        }
+        return result;
+    }
+
     /**
      * 1:N 관계(컬렉션)를 제외한 나머지를 한번에 조회
      */
     private List<OrderQueryDto> findOrders() {
         return em.createQuery(
-                "select new jpabook.jpashop.repository.order.query.OrderQueryDto(o.id, m.name, o.orderDate, o.status, d.address)" +
+                "select new jpabook.jpashop.repository.order.query.OrderQueryDto(o.id, m.name, o.orderDate, o.status, d.address, o.totalPrice, o.itemCount)" +
                         " from Order o" +
                         " join o.member m" +
                         " join o.delivery d", OrderQueryDto.class)
@@ -60,13 +142,20 @@ public class OrderQueryRepository {
      * 최적화
      * Query: 루트 1번, 컬렉션 1번
      * 데이터를 한꺼번에 처리할 때 많이 사용하는 방식
-     *
+     * - 순차 조회는 호출한 트랜잭션에 참여한다. (없으면 읽기 전용 트랜잭션 하나)
+     * - chunk-parallelism 이 2 이상이면 findOrderQueryDtos_parallel 처럼 루트와 청크를 모두 작업 스레드에서 조회하고,
+     *   그동안만 호출한 트랜잭션을 중단한다.
+     *   호출 스레드가 트랜잭션(커넥션)을 잡은 채로 커넥션이 필요한 작업을 기다리면 요청이 몰릴 때 풀이 고갈되어 서로 기다린다.
      */
+    @Transactional(propagation = Propagation.SUPPORTS) //트랜잭션은 경로마다 아래에서 정한다.
     public List<OrderQueryDto> findAllByDto_optimization() {
+        if (!chunkParallel) {
+            return readOnlyTx.execute(status -> addOrderItems(findOrders()));
+        }
+        return noTx.execute(status -> addOrderItems(inReadOnlyTransaction(this::findOrders).join()));
+    }
 
-        //루트 조회(toOne 코드를 모두 한번에 조회)
-        List<OrderQueryDto> result = findOrders();
-
+    private List<OrderQueryDto> addOrderItems(List<OrderQueryDto> result) {
         //orderItem 컬렉션을 MAP 한방에 조회
         Map<Long, List<OrderItemQueryDto>> orderItemMap = findOrderItemMap(toOrderIds(result));
 
@@ -82,27 +171,133 @@ public class OrderQueryRepository {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * orderIds 를 inClauseChunkSize 단위로 나눠서 IN 쿼리 실행
+     * - 바인드 파라미터 수 제한을 넘지 않고, 쿼리 수는 ceil(N / chunkSize) 로 예측 가능하다.
+     * - hibernate.query.in_clause_parameter_padding 으로 마지막 청크도 2의 거듭제곱 크기로 맞춰져서 캐시되는 실행계획 수가 고정된다.
+     * - chunk-parallelism 이 2 이상이면 청크를 별도 커넥션에서 동시에 조회한다. (호출 스레드는 트랜잭션 밖에서 기다려야 한다)
+     */
     private Map<Long, List<OrderItemQueryDto>> findOrderItemMap(List<Long> orderIds) {
-        List<OrderItemQueryDto> orderItems = em.createQuery(
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < orderIds.size(); i += inClauseChunkSize) {
+            chunks.add(orderIds.subList(i, Math.min(i + inClauseChunkSize, orderIds.size())));
+        }
+
+        List<List<OrderItemQueryDto>> results;
+        if (!chunkParallel || chunks.size() < 2) {
+            results = chunks.stream()
+                    .map(chunk -> findOrderItems(em, chunk))
+                    .collect(Collectors.toList());
+        } else {
+            List<CompletableFuture<List<OrderItemQueryDto>>> futures = chunks.stream()
+                    .map(chunk -> inReadOnlyTransaction(() -> findOrderItems(em, chunk)))
+                    .collect(Collectors.toList());
+            results = futures.stream()
+                    .map(CompletableFuture::join)
+                    .collect(Collectors.toList());
+        }
+
+        Map<Long, List<OrderItemQueryDto>> orderItemMap = new HashMap<>(orderIds.size() * 2);
+        for (List<OrderItemQueryDto> orderItems : results) {
+            for (OrderItemQueryDto orderItem : orderItems) {
+                orderItemMap.computeIfAbsent(orderItem.getOrderId(), id -> new ArrayList<>()).add(orderItem);
+            }
+        }
+        return orderItemMap;
+    }
+
+    /**
+     * 병렬 조회용: queryExecutor 스레드에서 읽기 전용 트랜잭션(= 별도 커넥션)으로 실행
+     * 호출한 트랜잭션의 커밋되지 않은 변경은 보이지 않으므로 조회 전용 API 에서만 사용한다.
+     * 대기열이 차서 호출 스레드에서 실행될 때도 트랜잭션 밖에서 부르므로 읽기 전용 트랜잭션을 새로 시작한다.
+     */
+    private <T> CompletableFuture<T> inReadOnlyTransaction(Supplier<T> query) {
+        return CompletableFuture.supplyAsync(() -> readOnlyTx.execute(status -> query.get()), queryExecutor);
+    }
+
+    private List<OrderItemQueryDto> findOrderItems(EntityManager em, List<Long> orderIds) {
+        return em.createQuery(
                 "select new jpabook.jpashop.repository.order.query.OrderItemQueryDto(oi.order.id, i.name, oi.orderPrice, oi.count)" +
                         " from OrderItem oi" +
                         " join oi.item i" +
                         " where oi.order.id in :orderIds", OrderItemQueryDto.class)
                 .setParameter("orderIds", orderIds)
                 .getResultList();
-
-        return orderItems.stream()
-                .collect(Collectors.groupingBy(OrderItemQueryDto::getOrderId));
     }
 
+    /**
+     * 플랫 데이터 조회
+     * OrderFlatGrouper 가 주문 단위로 끊어 묶을 수 있도록 order_id 순으로 정렬한다.
+     */
     public List<OrderFlatDto> findAllByDto_flat() {
         return em.createQuery(
-                "select new jpabook.jpashop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, i.name, oi.orderPrice, oi.count)" +
+                "select new jpabook.jpashop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, o.totalPrice, o.itemCount, i.name, oi.orderPrice, oi.count)" +
                         " from Order o" +
                         " join o.member m" +
                         " join o.delivery d" +
                         " join o.orderItems oi" +
-                        " join oi.item i", OrderFlatDto.class)
+                        " join oi.item i" +
+                        " order by o.id", OrderFlatDto.class)
+                .getResultList();
+    }
+
+    /**
+     * 플랫 데이터 페이징 (row 수가 아니라 주문 수 기준)
+     * Query: 페이지에 들어갈 order_id 범위 1번, 플랫 데이터 1번
+     * - lastOrderId 이후 주문 limit 개의 id 범위를 먼저 구하고, 그 범위의 플랫 row 를 모두 가져온다.
+     * - 다음 페이지 커서는 첫 쿼리의 id 페이지로 정한다. (주문상품이 없는 주문은 inner join 에서 빠진다)
+     * - Slice 처럼 id 를 limit + 1 개 조회해서 다음 페이지가 있는지 본다. (남은 주문이 딱 limit 개면 마지막 페이지)
+     */
+    public OrderFlatPage findAllByDto_flat(Long lastOrderId, int limit) {
+        List<Long> orderIds = em.createQuery(
+                "select o.id from Order o" +
+                        " where o.id > :lastOrderId" +
+                        " order by o.id", Long.class)
+                .setParameter("lastOrderId", lastOrderId)
+                .setMaxResults(limit + 1)
                 .getResultList();
+
+        if (orderIds.isEmpty()) {
+            return new OrderFlatPage(new ArrayList<>(), true, null);
+        }
+        boolean last = orderIds.size() <= limit;
+        if (!last) {
+            orderIds = orderIds.subList(0, limit);
+        }
+
+        Long lastPageOrderId = orderIds.get(orderIds.size() - 1);
+        List<OrderFlatDto> flats = em.createQuery(
+                "select new jpabook.jpashop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, o.totalPrice, o.itemCount, i.name, oi.orderPrice, oi.count)" +
+                        " from Order o" +
+                        " join o.member m" +
+                        " join o.delivery d" +
+                        " join o.orderItems oi" +
+                        " join oi.item i" +
+                        " where o.id between :firstOrderId and :lastOrderId" +
+                        " order by o.id", OrderFlatDto.class)
+                .setParameter("firstOrderId", orderIds.get(0))
+                .setParameter("lastOrderId", lastPageOrderId)
+                .getResultList();
+        return new OrderFlatPage(flats, last, lastPageOrderId);
+    }
+
+    /**
+     * 플랫 데이터 스트리밍 조회
+     * - forward-only 커서(ScrollableResults)로 fetchSize 만큼씩 가져오므로 전체 결과를 List 로 올리지 않는다.
+     * - 주문 단위로 끊어 읽을 수 있도록 order_id 순으로 정렬한다.
+     * - DTO 는 영속성 컨텍스트에 올라가지 않으므로 중간에 비우거나 읽기 전용 힌트를 줄 필요가 없다.
+     * - 반드시 트랜잭션 안에서 사용하고 다 쓴 뒤 close 해야 한다.
+     */
+    public Stream<OrderFlatDto> streamAllByDto_flat(int fetchSize) {
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, o.totalPrice, o.itemCount, i.name, oi.orderPrice, oi.count)" +
+                        " from Order o" +
+                        " join o.member m" +
+                        " join o.delivery d" +
+                        " join o.orderItems oi" +
+                        " join oi.item i" +
+                        " order by o.id", OrderFlatDto.class)
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .getResultStream();
     }
-}
\ No newline at end of file
+}
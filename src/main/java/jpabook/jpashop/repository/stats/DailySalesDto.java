@@ -0,0 +1,16 @@
+package jpabook.jpashop.repository.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class DailySalesDto {
+
+    private LocalDate salesDate;
+    private long revenue; //매출
+    private long units; //판매 수량
+    private long orderCount; //주문 수
+}
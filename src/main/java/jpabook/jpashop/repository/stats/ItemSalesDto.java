@@ -0,0 +1,14 @@
+package jpabook.jpashop.repository.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ItemSalesDto {
+
+    private Long itemId;
+    private String itemName;
+    private long revenue; //매출
+    private long units; //판매 수량
+}
@@ -0,0 +1,15 @@
+package jpabook.jpashop.repository.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class MemberSalesDto {
+
+    private Long memberId;
+    private String name;
+    private long revenue; //구매 금액
+    private long units; //구매 수량
+    private long orderCount; //주문 수
+}
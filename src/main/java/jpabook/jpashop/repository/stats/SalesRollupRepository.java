@@ -0,0 +1,177 @@
+package jpabook.jpashop.repository.stats;
+
+import jpabook.jpashop.domain.stats.DailySales;
+import jpabook.jpashop.domain.stats.ItemSales;
+import jpabook.jpashop.domain.stats.MemberSales;
+import jpabook.jpashop.domain.stats.SalesDelta;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 매출 집계 테이블(daily_sales, item_sales, member_sales) 갱신/조회
+ * - 갱신은 모두 집합 연산: 반영할 주문을 GROUP BY 로 합친 뒤 MERGE 로 기존 집계에 더한다.
+ * - 일/회원 집계는 orders.total_price, item_count 만 읽고, 상품 집계만 order_item 을 읽는다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SalesRollupRepository {
+
+    private static final String DAILY_MERGE = "merge into daily_sales t using (%s) s on (t.sales_date = s.sales_date)" +
+            " when matched then update set revenue = t.revenue + s.revenue, units = t.units + s.units, order_count = t.order_count + s.order_count" +
+            " when not matched then insert (sales_date, revenue, units, order_count) values (s.sales_date, s.revenue, s.units, s.order_count)";
+
+    private static final String ITEM_MERGE = "merge into item_sales t using (%s) s on (t.item_id = s.item_id and t.sales_date = s.sales_date)" +
+            " when matched then update set revenue = t.revenue + s.revenue, units = t.units + s.units" +
+            " when not matched then insert (item_id, sales_date, revenue, units) values (s.item_id, s.sales_date, s.revenue, s.units)";
+
+    private static final String MEMBER_MERGE = "merge into member_sales t using (%s) s on (t.member_id = s.member_id)" +
+            " when matched then update set revenue = t.revenue + s.revenue, units = t.units + s.units, order_count = t.order_count + s.order_count" +
+            " when not matched then insert (member_id, revenue, units, order_count) values (s.member_id, s.revenue, s.units, s.order_count)";
+
+    private final EntityManager em;
+
+    //==미반영 기록==//
+    public void addDelta(Long orderId, int sign) {
+        em.persist(new SalesDelta(orderId, sign));
+    }
+
+    public int addDeltas(Collection<Long> orderIds, int sign) {
+        return nativeQuery("insert into sales_delta (order_id, sign) select o.order_id, :sign from orders o where o.order_id in (:orderIds)", SalesDelta.class)
+                .setParameter("sign", sign)
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+    }
+
+    /**
+     * 커밋된 미반영 기록을 오래된 순으로 limit 개 잠근다.
+     * 다른 노드가 같은 기록을 동시에 반영하지 못하게 한다.
+     */
+    public List<Long> lockPendingDeltaIds(int limit) {
+        return em.createQuery("select d.id from SalesDelta d order by d.id", Long.class)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public int deleteDeltas(Collection<Long> deltaIds) {
+        return em.createQuery("delete from SalesDelta d where d.id in :deltaIds")
+                .setParameter("deltaIds", deltaIds)
+                .executeUpdate();
+    }
+
+    //==반영==//
+    /**
+     * 미반영 기록을 집계 테이블에 더한다. (취소 기록은 sign = -1 이므로 빠진다)
+     */
+    public void fold(Collection<Long> deltaIds) {
+        String deltas = "sales_delta sd join orders o on o.order_id = sd.order_id where sd.sales_delta_id in (:deltaIds)";
+        merge(DAILY_MERGE, DailySales.class, "select cast(o.order_date as date) sales_date, sum(sd.sign * o.total_price) revenue, sum(sd.sign * o.item_count) units, sum(sd.sign) order_count" +
+                " from " + deltas + " group by cast(o.order_date as date)", deltaIds);
+        merge(ITEM_MERGE, ItemSales.class, "select oi.item_id, cast(o.order_date as date) sales_date, sum(sd.sign * oi.order_price * oi.count) revenue, sum(sd.sign * oi.count) units" +
+                " from " + deltas.replace(" where", " join order_item oi on oi.order_id = o.order_id where") + " group by oi.item_id, cast(o.order_date as date)", deltaIds);
+        merge(MEMBER_MERGE, MemberSales.class, "select o.member_id, sum(sd.sign * o.total_price) revenue, sum(sd.sign * o.item_count) units, sum(sd.sign) order_count" +
+                " from " + deltas + " group by o.member_id", deltaIds);
+    }
+
+    /**
+     * 집계 테이블을 비우고 주문 테이블에서 다시 계산 (여러 번 실행해도 결과가 같다)
+     * 미반영 기록은 지우지 않고 그만큼 빼 둔다. (나중에 fold 가 더하면 주문 테이블과 같아진다)
+     * 주문과 미반영 기록을 한 문장에서 같이 읽으므로, 계산 도중 커밋된 주문은 둘 다에 보이거나 둘 다에 안 보인다.
+     * (기록을 먼저 지우고 주문을 나중에 읽으면 그 사이 커밋된 주문이 계산에도 들어가고 기록도 남아서 두 번 더해진다)
+     */
+    public void rebuild() {
+        nativeQuery("delete from daily_sales", DailySales.class).executeUpdate();
+        nativeQuery("delete from item_sales", ItemSales.class).executeUpdate();
+        nativeQuery("delete from member_sales", MemberSales.class).executeUpdate();
+
+        String orders = "orders o where o.status = 'ORDER'";
+        String deltas = "sales_delta sd join orders o on o.order_id = sd.order_id";
+        nativeQuery("insert into daily_sales (sales_date, revenue, units, order_count)" +
+                " select sales_date, sum(revenue), sum(units), sum(order_count) from (" +
+                " select cast(o.order_date as date) sales_date, o.total_price revenue, o.item_count units, 1 order_count from " + orders +
+                " union all" +
+                " select cast(o.order_date as date), -sd.sign * o.total_price, -sd.sign * o.item_count, -sd.sign from " + deltas +
+                ") s group by sales_date" +
+                " having sum(revenue) <> 0 or sum(units) <> 0 or sum(order_count) <> 0", DailySales.class).executeUpdate();
+        nativeQuery("insert into item_sales (item_id, sales_date, revenue, units)" +
+                " select item_id, sales_date, sum(revenue), sum(units) from (" +
+                " select oi.item_id, cast(o.order_date as date) sales_date, oi.order_price * oi.count revenue, oi.count units" +
+                " from " + orders.replace(" where", " join order_item oi on oi.order_id = o.order_id where") +
+                " union all" +
+                " select oi.item_id, cast(o.order_date as date), -sd.sign * oi.order_price * oi.count, -sd.sign * oi.count" +
+                " from " + deltas + " join order_item oi on oi.order_id = o.order_id" +
+                ") s group by item_id, sales_date" +
+                " having sum(revenue) <> 0 or sum(units) <> 0", ItemSales.class).executeUpdate();
+        nativeQuery("insert into member_sales (member_id, revenue, units, order_count)" +
+                " select member_id, sum(revenue), sum(units), sum(order_count) from (" +
+                " select o.member_id, o.total_price revenue, o.item_count units, 1 order_count from " + orders +
+                " union all" +
+                " select o.member_id, -sd.sign * o.total_price, -sd.sign * o.item_count, -sd.sign from " + deltas +
+                ") s group by member_id" +
+                " having sum(revenue) <> 0 or sum(units) <> 0 or sum(order_count) <> 0", MemberSales.class).executeUpdate();
+    }
+
+    private void merge(String mergeSql, Class<?> rollup, String source, Collection<Long> deltaIds) {
+        nativeQuery(String.format(mergeSql, source), rollup)
+                .setParameter("deltaIds", deltaIds)
+                .executeUpdate();
+    }
+
+    /**
+     * 바꾸는 테이블을 지정하지 않은 네이티브 쿼리는 2차 캐시 영역을 모두 비우므로 항상 지정한다.
+     */
+    private NativeQuery<?> nativeQuery(String sql, Class<?> entityClass) {
+        return em.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(entityClass);
+    }
+
+    //==조회==//
+    public List<DailySalesDto> findDailySales(LocalDate from, LocalDate to) {
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.stats.DailySalesDto(s.salesDate, s.revenue, s.units, s.orderCount)" +
+                        " from DailySales s" +
+                        " where s.salesDate between :from and :to" +
+                        " order by s.salesDate", DailySalesDto.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList();
+    }
+
+    /**
+     * 기간 내 매출 상위 상품
+     */
+    public List<ItemSalesDto> findTopItems(LocalDate from, LocalDate to, int limit) {
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.stats.ItemSalesDto(s.itemId, i.name, sum(s.revenue), sum(s.units))" +
+                        " from ItemSales s, Item i" +
+                        " where i.id = s.itemId" +
+                        " and s.salesDate between :from and :to" +
+                        " group by s.itemId, i.name" +
+                        " order by sum(s.revenue) desc", ItemSalesDto.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * 누적 구매 금액 상위 회원
+     */
+    public List<MemberSalesDto> findTopMembers(int limit) {
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.stats.MemberSalesDto(s.memberId, m.name, s.revenue, s.units, s.orderCount)" +
+                        " from MemberSales s, Member m" +
+                        " where m.id = s.memberId" +
+                        " order by s.revenue desc", MemberSalesDto.class)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -0,0 +1,28 @@
+package jpabook.jpashop.retry;
+
+import java.lang.annotation.*;
+
+/**
+ * 동시 수정 충돌(@Version 불일치, 잠금 대기 초과, 데드락)이 나면 메서드를 처음부터 다시 실행한다.
+ * - 트랜잭션 바깥에서 감싸므로 시도마다 새 트랜잭션에서 최신 값을 다시 읽는다.
+ * - 이미 트랜잭션 안에서 호출되면 재시도하지 않는다. (바깥 트랜잭션이 롤백 전용이 되므로 바깥에서 다시 해야 한다)
+ * - 대기 시간은 지수 증가 + full jitter: 0 ~ min(maxBackoffMs, backoffMs * 2^(시도-1)) 사이 무작위
+ * @see RetryOnConflictAspect
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RetryOnConflict {
+
+    /**
+     * 최대 시도 횟수 (첫 호출 포함)
+     */
+    int maxAttempts() default 3;
+
+    /**
+     * 첫 재시도 전 최대 대기 시간 (ms)
+     */
+    long backoffMs() default 10;
+
+    long maxBackoffMs() default 200;
+}
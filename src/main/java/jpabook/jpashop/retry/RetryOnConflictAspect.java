@@ -0,0 +1,85 @@
+package jpabook.jpashop.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.OptimisticLockException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @RetryOnConflict 처리
+ * - 재시도 대상: ConcurrencyFailureException(낙관적 락 실패, 잠금 대기 초과, 데드락)과 번역되지 않은 OptimisticLockException
+ * - 메트릭 (method 태그)
+ *   - jpashop.retry.calls{outcome}: success(한 번에 성공), recovered(재시도 후 성공), exhausted(재시도 소진), error(그 밖의 예외)
+ *   - jpashop.retry.conflicts: 충돌 횟수 -> conflicts / calls 가 충돌률
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1) //@Transactional(LOWEST_PRECEDENCE)보다 바깥
+public class RetryOnConflictAspect {
+
+    private final MeterRegistry meterRegistry;
+
+    public RetryOnConflictAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("@annotation(retry)")
+    public Object retry(ProceedingJoinPoint joinPoint, RetryOnConflict retry) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        String method = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Object result = joinPoint.proceed();
+                count(method, attempt == 1 ? "success" : "recovered");
+                return result;
+            } catch (ConcurrencyFailureException | OptimisticLockException e) {
+                Counter.builder("jpashop.retry.conflicts")
+                        .tag("method", method)
+                        .register(meterRegistry)
+                        .increment();
+                if (attempt >= retry.maxAttempts()) {
+                    count(method, "exhausted");
+                    log.warn("{} 충돌 재시도 {}회 소진: {}", method, attempt, e.getMessage());
+                    throw e;
+                }
+                log.debug("{} 충돌, 재시도 {}/{}: {}", method, attempt, retry.maxAttempts() - 1, e.getMessage());
+                backoff(retry, attempt, e);
+            } catch (Throwable e) {
+                count(method, "error");
+                throw e;
+            }
+        }
+    }
+
+    private void backoff(RetryOnConflict retry, int attempt, RuntimeException conflict) {
+        long ceiling = Math.min(retry.maxBackoffMs(), retry.backoffMs() << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+
+    private void count(String method, String outcome) {
+        Counter.builder("jpashop.retry.calls")
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,160 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.datasource.ReplicaRoutingDataSource;
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.ItemRepositoryV2;
+import jpabook.jpashop.repository.category.CategoryRepository;
+import jpabook.jpashop.repository.category.CategoryTree;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 카테고리
+ * - 트리는 CategoryTree 로 메모리에 캐시한다. 카테고리가 바뀌면 버전을 올리고, 버전이 다른 트리는 다음 조회 때 쿼리 한 번으로 다시 만든다.
+ * - 노드 로컬 캐시이므로 다른 노드의 변경은 max-age 가 지나야 보인다. (2차 캐시와 같은 정책)
+ * - 트리는 주 DB 에서 읽는다. 변경 직후 늦은 복제 DB 에서 읽으면 이전 트리를 새 버전으로 max-age 동안 캐시하게 된다.
+ * - 하위 카테고리 포함 상품 조회: 트리에서 하위 카테고리 id 를 구하고 category_item 인덱스 조회 한 번
+ */
+@Service
+@Transactional(readOnly = true)
+public class CategoryService {
+
+    private final CategoryRepository categoryRepository;
+    private final ItemRepositoryV2 itemRepository;
+    private final long maxAgeNanos;
+
+    private final AtomicLong version = new AtomicLong();
+    private volatile CategoryTree tree;
+    private volatile long loadedAt;
+
+    public CategoryService(CategoryRepository categoryRepository,
+                           ItemRepositoryV2 itemRepository,
+                           @Value("${jpashop.category.tree-max-age:10m}") Duration maxAge) {
+        this.categoryRepository = categoryRepository;
+        this.itemRepository = itemRepository;
+        this.maxAgeNanos = maxAge.toNanos();
+    }
+
+    /**
+     * 카테고리 추가
+     * @param parentId null 이면 최상위
+     */
+    @Transactional
+    public Long addCategory(String name, Long parentId) {
+        Category category = new Category();
+        category.setName(name);
+        if (parentId != null) {
+            findCategory(parentId).addChildCategory(category);
+        }
+        categoryRepository.save(category);
+        treeChanged();
+        return category.getId();
+    }
+
+    /**
+     * 카테고리 이동 (하위 카테고리도 같이 이동)
+     * 자기 자신이나 자기 하위 카테고리 밑으로는 옮길 수 없다.
+     * 순환 검사는 캐시된 트리가 아니라 DB 에서 한다. (다른 노드의 변경이 아직 안 보일 수 있다)
+     * 옮길 카테고리와 새 부모부터 최상위까지를 잠그면서 올라가므로 동시에 서로의 밑으로 옮겨도 순환이 생기지 않는다.
+     */
+    @Transactional
+    public void moveCategory(Long categoryId, Long parentId) {
+        Category category = lockCategory(categoryId);
+        Category parent = parentId == null ? null : lockCategory(parentId);
+
+        Set<Long> visited = new HashSet<>();
+        for (Category ancestor = parent; ancestor != null; ancestor = ancestor.getParent() == null ? null : lockCategory(ancestor.getParent().getId())) {
+            if (ancestor.getId().equals(categoryId)) {
+                throw new IllegalArgumentException("하위 카테고리로 옮길 수 없습니다.");
+            }
+            if (!visited.add(ancestor.getId())) {
+                throw new IllegalStateException("카테고리 부모가 순환합니다: " + ancestor.getId());
+            }
+        }
+
+        category.moveTo(parent);
+        treeChanged();
+    }
+
+    @Transactional
+    public void addItem(Long categoryId, Long itemId) {
+        Item item = itemRepository.findById(itemId).orElseThrow(() ->
+                new IllegalArgumentException("Item not found with id: " + itemId));
+        findCategory(categoryId).getItems().add(item);
+    }
+
+    /**
+     * 캐시된 트리 (버전이 바뀌었거나 max-age 가 지났으면 다시 만든다)
+     * 트랜잭션의 첫 조회여야 주 DB 로 간다. (커넥션은 첫 SQL 때 고른다)
+     */
+    public CategoryTree getTree() {
+        CategoryTree current = tree;
+        if (isFresh(current)) {
+            return current;
+        }
+        synchronized (this) {
+            current = tree;
+            if (isFresh(current)) {
+                return current;
+            }
+            //읽는 도중 버전이 바뀌면 이 트리는 이전 버전으로 남아서 다음 조회 때 다시 만든다.
+            long readVersion = version.get();
+            current = CategoryTree.build(readVersion, ReplicaRoutingDataSource.onPrimary(categoryRepository::findAllNodes));
+            tree = current;
+            loadedAt = System.nanoTime();
+            return current;
+        }
+    }
+
+    /**
+     * 카테고리와 하위 카테고리 전체에 속한 상품
+     */
+    public List<Item> findItems(Long categoryId, int offset, int limit) {
+        return categoryRepository.findItems(getTree().descendantIds(categoryId), offset, limit);
+    }
+
+    private boolean isFresh(CategoryTree current) {
+        return current != null
+                && current.getVersion() == version.get()
+                && System.nanoTime() - loadedAt < maxAgeNanos;
+    }
+
+    private Category findCategory(Long id) {
+        Category category = categoryRepository.findOne(id);
+        if (category == null) {
+            throw new IllegalArgumentException("Category not found with id: " + id);
+        }
+        return category;
+    }
+
+    private Category lockCategory(Long id) {
+        Category category = categoryRepository.findOneForUpdate(id);
+        if (category == null) {
+            throw new IllegalArgumentException("Category not found with id: " + id);
+        }
+        return category;
+    }
+
+    private void treeChanged() {
+        version.incrementAndGet();
+        //커밋 전에 다른 스레드가 이전 트리를 다시 만들었을 수 있으므로 트랜잭션이 끝난 뒤 한 번 더 올린다. (롤백이어도 다시 만들면 그만)
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    version.incrementAndGet();
+                }
+            });
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.StaleVersionException;
 import jpabook.jpashop.repository.ItemRepositoryV2;
+import jpabook.jpashop.retry.RetryOnConflict;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,10 +22,18 @@ public class ItemService {
         itemRepository.save(item);
     }
 
+    /**
+     * 상품 수정
+     * @param version 수정 화면을 만들 때 읽은 버전. 그 사이 주문 등으로 상품이 바뀌었으면 덮어쓰지 않고 StaleVersionException (null 이면 확인 안 함)
+     */
+    @RetryOnConflict
     @Transactional
-    public void updateItem(Long itemId, String name, int price, int stockQuantity) {
-        Item item = itemRepository.findById(itemId).orElseThrow(() -> 
+    public void updateItem(Long itemId, Long version, String name, int price, int stockQuantity) {
+        Item item = itemRepository.findLatestById(itemId).orElseThrow(() -> 
             new IllegalArgumentException("Item not found with id: " + itemId));
+        if (version != null && !version.equals(item.getVersion())) {
+            throw new StaleVersionException("다른 곳에서 상품이 먼저 수정되었습니다. 최신 내용을 확인하고 다시 수정해 주세요.");
+        }
         item.setName(name);
         item.setPrice(price);
         item.setStockQuantity(stockQuantity);
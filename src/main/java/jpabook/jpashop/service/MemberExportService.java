@@ -0,0 +1,72 @@
+package jpabook.jpashop.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jpabook.jpashop.repository.MemberQueryDto;
+import jpabook.jpashop.repository.MemberRepositoryV2;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class MemberExportService {
+
+    public static final int MAX_LIMIT = 1000; //limit 으로 줄 수 있는 최대 회원 수 (0 은 끝까지)
+
+    private final MemberRepositoryV2 memberRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 회원 목록을 {"data":[{"id":..,"name":..}, ...], "nextLastId":..} 로 쓴다.
+     * - 커서에서 읽은 DTO 를 JsonGenerator 로 바로 쓰고 버리므로 회원 수와 관계없이 메모리 사용량이 일정하다.
+     * - DTO 는 영속성 컨텍스트에 올라가지 않으므로 em.clear() 가 필요 없다.
+     * @param lastId 이 id 다음 회원부터
+     * @param limit 0 이면 끝까지. 아니면 SQL 에 limit 을 걸고, limit 건을 채우면 다음 페이지용 nextLastId 를 쓴다.
+     * @return 쓴 회원 수
+     * @throws IllegalArgumentException lastId 가 없거나 음수, limit 이 0 ~ MAX_LIMIT 밖이면 (응답에 아무것도 쓰기 전에)
+     */
+    public long writeMembers(OutputStream out, Long lastId, int limit) throws IOException {
+        if (lastId == null || lastId < 0) {
+            throw new IllegalArgumentException("lastId 는 0 이상이어야 합니다.");
+        }
+        if (limit < 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit 은 0(끝까지) 또는 1 ~ " + MAX_LIMIT + " 이어야 합니다.");
+        }
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        long count = 0;
+        Long last = null;
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("data");
+        try (Stream<MemberQueryDto> members = limit > 0
+                ? memberRepository.streamDtosAfter(lastId, PageRequest.of(0, limit))
+                : memberRepository.streamDtosAfter(lastId)) {
+            Iterator<MemberQueryDto> iterator = members.iterator();
+            while (iterator.hasNext()) {
+                MemberQueryDto member = iterator.next();
+                generator.writeStartObject();
+                generator.writeNumberField("id", member.getId());
+                generator.writeStringField("name", member.getName());
+                generator.writeEndObject();
+                last = member.getId();
+                count++;
+            }
+        }
+        generator.writeEndArray();
+        if (limit > 0 && count == limit) {
+            generator.writeNumberField("nextLastId", last);
+        }
+        generator.writeEndObject();
+        generator.close();
+        return count;
+    }
+}
@@ -0,0 +1,20 @@
+package jpabook.jpashop.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 회원 일괄 등록 요청 한 줄 (JSON 배열 원소 또는 CSV 한 줄)
+ * 주소는 선택
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemberImportRow {
+
+    private String name;
+    private String city;
+    private String street;
+    private String zipcode;
+}
@@ -0,0 +1,193 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.repository.MemberRepositoryV2;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import javax.persistence.EntityManager;
+import java.util.*;
+
+/**
+ * 회원 일괄 등록 (제휴사 회원 이관 등)
+ * - 요청 row 를 한 건씩 읽어 청크(chunk-size)로 모으고, 청크마다 트랜잭션 하나로 검증과 저장을 한다. (요청 크기와 관계없이 메모리 일정)
+ * - 중복 검증은 청크 단위 집합 연산: 이름 필터가 있을 수도 있다고 한 이름만 모아 IN 쿼리 한 번
+ *   앞 청크에서 등록한 이름은 이미 커밋되어 필터에도 들어가므로 DB 조회로 걸러진다. (요청 전체의 이름을 메모리에 모으지 않는다)
+ * - 저장은 persist + JDBC 배치 (pooled-lo id 라 insert 가 배치로 묶인다)
+ * - 잘못된 row 는 건너뛰고 행 번호와 사유를 결과에 남긴다. 앞 청크는 이미 커밋되므로 중간에 실패해도 유지된다.
+ * - 검증과 저장 사이에 다른 요청이 같은 이름으로 가입하면 유니크 제약 위반 -> 그 청크만 다시 검증해서 저장한다.
+ *   MAX_ATTEMPTS 번 모두 실패하면 그 청크의 row 를 모두 실패로 남기고 다음 청크로 넘어간다.
+ */
+@Slf4j
+@Service
+public class MemberImportService {
+
+    private static final int MAX_NAME_LENGTH = 255; //member.name 컬럼 길이
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final MemberRepositoryV2 memberRepository;
+    private final MemberNameFilter memberNameFilter;
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public MemberImportService(MemberRepositoryV2 memberRepository,
+                               MemberNameFilter memberNameFilter,
+                               EntityManager em,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${jpashop.member-import.chunk-size:1000}") int chunkSize) {
+        this.memberRepository = memberRepository;
+        this.memberNameFilter = memberNameFilter;
+        this.em = em;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param rows 요청 본문에서 한 건씩 읽는 iterator. 읽다가 실패하면(형식 오류) 거기서 멈추고 그때까지의 결과를 반환한다.
+     */
+    public ImportResult importMembers(Iterator<MemberImportRow> rows) {
+        ImportResult result = new ImportResult();
+        List<MemberImportRow> chunk = new ArrayList<>(chunkSize);
+        int firstRow = 1;
+
+        while (true) {
+            MemberImportRow row;
+            try {
+                if (!rows.hasNext()) {
+                    break;
+                }
+                row = rows.next();
+            } catch (RuntimeException e) {
+                result.abort(firstRow + chunk.size(), e.getMessage());
+                break;
+            }
+
+            chunk.add(row);
+            if (chunk.size() == chunkSize) {
+                importChunk(firstRow, chunk, result);
+                firstRow += chunk.size();
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(firstRow, chunk, result);
+        }
+        log.info("회원 일괄 등록: {} 건 중 {} 건 등록, {} 건 실패", result.getTotal(), result.getImported(), result.getFailed());
+        return result;
+    }
+
+    private void importChunk(int firstRow, List<MemberImportRow> rows, ImportResult result) {
+        for (int attempt = 1; ; attempt++) {
+            boolean useFilter = attempt == 1; //다른 노드에서 등록한 이름은 필터에 없으므로 다시 할 때는 모두 DB 로 확인
+            try {
+                Chunk chunk = transactionTemplate.execute(status -> saveChunk(firstRow, rows, useFilter));
+                chunk.names.forEach(memberNameFilter::put);
+                result.add(rows.size(), chunk.names.size(), chunk.errors);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    log.warn("회원 일괄 등록 중 같은 이름이 계속 먼저 등록됨, {}행부터 {}건을 실패로 남긴다.", firstRow, rows.size());
+                    List<RowError> errors = new ArrayList<>(rows.size());
+                    for (int i = 0; i < rows.size(); i++) {
+                        errors.add(new RowError(firstRow + i, rows.get(i).getName(), "동시에 등록된 회원과 겹쳐 저장하지 못했습니다."));
+                    }
+                    result.add(rows.size(), 0, errors);
+                    return;
+                }
+                log.info("회원 일괄 등록 중 같은 이름이 먼저 등록됨, {}행부터 청크를 다시 검증", firstRow);
+            }
+        }
+    }
+
+    /**
+     * 청크 하나 검증 + 저장 (트랜잭션 안)
+     */
+    private Chunk saveChunk(int firstRow, List<MemberImportRow> rows, boolean useFilter) {
+        Chunk chunk = new Chunk();
+
+        //DB 에 있을 수도 있는 이름만 한 번에 조회
+        Set<String> candidates = new HashSet<>();
+        for (MemberImportRow row : rows) {
+            if (StringUtils.hasText(row.getName()) && (!useFilter || memberNameFilter.mightContain(row.getName()))) {
+                candidates.add(row.getName());
+            }
+        }
+        Set<String> existing = candidates.isEmpty()
+                ? Collections.emptySet()
+                : new HashSet<>(memberRepository.findExistingNames(candidates));
+
+        Set<String> names = new HashSet<>();
+        List<Member> members = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            MemberImportRow row = rows.get(i);
+            String name = row.getName();
+            String error = !StringUtils.hasText(name) ? "이름이 비어 있습니다."
+                    : name.length() > MAX_NAME_LENGTH ? "이름이 너무 깁니다."
+                    : !names.add(name) ? "요청 안에서 중복된 이름입니다."
+                    : existing.contains(name) ? "이미 존재하는 회원입니다."
+                    : null;
+            if (error != null) {
+                chunk.errors.add(new RowError(firstRow + i, name, error));
+                continue;
+            }
+
+            Member member = new Member();
+            member.setName(name);
+            if (row.getCity() != null || row.getStreet() != null || row.getZipcode() != null) {
+                member.setAddress(new Address(row.getCity(), row.getStreet(), row.getZipcode()));
+            }
+            members.add(member);
+            chunk.names.add(name);
+        }
+
+        memberRepository.saveAll(members);
+        memberRepository.flush(); //유니크 제약 위반을 커밋 전에 확인
+        em.clear(); //OSIV 면 영속성 컨텍스트가 요청 끝까지 살아 있으므로 청크마다 비운다.
+        return chunk;
+    }
+
+    private static class Chunk {
+        private final List<String> names = new ArrayList<>();
+        private final List<RowError> errors = new ArrayList<>();
+    }
+
+    @Getter
+    public static class ImportResult {
+
+        private int total; //읽은 row 수
+        private int imported; //등록한 회원 수
+        private final List<RowError> errors = new ArrayList<>(); //실패한 row (행 번호 순)
+        private RowError aborted; //요청 형식 오류로 중단했으면 그 위치와 사유
+
+        private void add(int total, int imported, List<RowError> errors) {
+            this.total += total;
+            this.imported += imported;
+            this.errors.addAll(errors);
+        }
+
+        private void abort(int row, String message) {
+            this.aborted = new RowError(row, null, message);
+        }
+
+        public int getFailed() {
+            return errors.size();
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class RowError {
+        private int row; //1부터 (CSV 는 헤더 제외)
+        private String name;
+        private String message;
+    }
+}
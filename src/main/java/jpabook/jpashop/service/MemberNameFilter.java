@@ -0,0 +1,157 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.MemberRepositoryV2;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * 회원 이름 Bloom filter (노드 로컬)
+ * - mightContain 이 false 면 그 이름은 이 노드가 아는 회원 중에는 확실히 없다. -> 가입 시 중복 확인 쿼리 생략
+ * - true 는 오탐일 수 있으므로 DB(existsByName)로 다시 확인한다.
+ * - 다른 노드에서 가입한 이름은 모를 수 있지만 member.name 유니크 제약이 최종 판정을 하므로 중복 가입은 생기지 않는다.
+ * - 시작할 때 회원 이름 전체로 채우고(warm up) 가입/이름 변경 때마다 추가한다. 채우기 전에는 항상 true
+ * - 비트는 AtomicLongArray 라서 잠금 없이 여러 스레드가 동시에 추가/조회할 수 있다. (삭제는 지원하지 않음)
+ */
+@Slf4j
+@Component
+public class MemberNameFilter {
+
+    private final MemberRepositoryV2 memberRepository;
+    private final TransactionTemplate readOnlyTx;
+    private final long expectedNames;
+    private final double falsePositiveRate;
+
+    private volatile Bits bits;
+    private volatile boolean warmedUp;
+
+    public MemberNameFilter(MemberRepositoryV2 memberRepository,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${jpashop.member.name-filter.expected-names:1000000}") long expectedNames,
+                            @Value("${jpashop.member.name-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.memberRepository = memberRepository;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.expectedNames = expectedNames;
+        this.falsePositiveRate = falsePositiveRate;
+        this.bits = new Bits(expectedNames, falsePositiveRate);
+    }
+
+    /**
+     * @return false 면 확실히 없는 이름, true 면 있을 수도 있는 이름
+     */
+    public boolean mightContain(String name) {
+        return !warmedUp || bits.mightContain(name);
+    }
+
+    public void put(String name) {
+        bits.put(name);
+    }
+
+    /**
+     * 회원 이름 전체를 커서로 읽어 새 필터를 만든 뒤 교체
+     * 읽는 동안 가입한 이름은 이전 필터와 새 필터 양쪽에 넣는다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        Bits fresh = new Bits(expectedNames, falsePositiveRate);
+        Bits previous = bits;
+        bits = new Bits(previous, fresh);
+
+        long count = readOnlyTx.execute(status -> {
+            try (Stream<String> names = memberRepository.streamNames()) {
+                return names.peek(fresh::put).count();
+            }
+        });
+        bits = fresh;
+        warmedUp = true;
+
+        if (count > expectedNames) {
+            log.warn("회원 이름 필터 용량 초과: {} 건 (expected-names={}), 오탐률이 올라간다.", count, expectedNames);
+        }
+        log.info("회원 이름 필터 준비 완료: {} 건", count);
+    }
+
+    /**
+     * 비트 배열과 해시 함수 k 개
+     * 이름의 64비트 해시를 둘로 나눠 h1 + i * h2 로 k 개 위치를 만든다. (Kirsch-Mitzenmacher)
+     */
+    private static class Bits {
+
+        private final AtomicLongArray words;
+        private final long bitSize;
+        private final int hashCount;
+        private final Bits also; //warm up 중에는 추가를 새 필터에도 반영
+
+        Bits(long expected, double fpp) {
+            long m = (long) Math.ceil(-expected * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            int wordCount = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (m + 63) / 64));
+            this.words = new AtomicLongArray(wordCount);
+            this.bitSize = (long) wordCount * 64;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitSize / Math.max(1, expected) * Math.log(2)));
+            this.also = null;
+        }
+
+        Bits(Bits current, Bits also) {
+            this.words = current.words;
+            this.bitSize = current.bitSize;
+            this.hashCount = current.hashCount;
+            this.also = also;
+        }
+
+        void put(String name) {
+            long hash = hash(name);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitSize;
+                long mask = 1L << index;
+                int word = (int) (index >>> 6);
+                long old;
+                while (((old = words.get(word)) & mask) == 0 && !words.compareAndSet(word, old, old | mask)) {
+                    //다른 스레드가 같은 word 를 바꿨으면 다시 시도
+                }
+            }
+            if (also != null) {
+                also.put(name);
+            }
+        }
+
+        boolean mightContain(String name) {
+            long hash = hash(name);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitSize;
+                if ((words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * FNV-1a 64 + murmur3 finalizer (String.hashCode 는 32비트라 충돌이 많다)
+         */
+        private static long hash(String name) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < name.length(); i++) {
+                h ^= name.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
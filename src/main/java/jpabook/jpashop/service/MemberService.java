@@ -1,12 +1,15 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.repository.MemberQueryDto;
 import jpabook.jpashop.repository.MemberRepositoryV2;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Objects;
 
 @Service
 @Transactional(readOnly = true)
@@ -14,21 +17,28 @@ import java.util.List;
 public class MemberService {
 
     private final MemberRepositoryV2 memberRepository;
+    private final MemberNameFilter memberNameFilter;
 
     /**
      * 회원 가입
+     * - 이름 필터가 처음 보는 이름이라고 하면 중복 확인 쿼리 없이 바로 저장한다.
+     * - 동시에 같은 이름으로 가입하면 둘 다 확인을 통과할 수 있으므로 member.name 유니크 제약으로 최종 판정한다.
      */
     @Transactional
     public Long join(Member member) {
 
-        validateDuplicateMember(member); //중복 회원 검증
-        memberRepository.save(member);
+        validateDuplicateMember(member.getName()); //중복 회원 검증
+        try {
+            memberRepository.saveAndFlush(member); //유니크 제약 위반을 커밋이 아니라 여기서 확인
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalStateException("이미 존재하는 회원입니다.", e);
+        }
+        memberNameFilter.put(member.getName());
         return member.getId();
     }
 
-    private void validateDuplicateMember(Member member) {
-        List<Member> findMembers = memberRepository.findByName(member.getName());
-        if (!findMembers.isEmpty()) {
+    private void validateDuplicateMember(String name) {
+        if (memberNameFilter.mightContain(name) && memberRepository.existsByName(name)) {
             throw new IllegalStateException("이미 존재하는 회원입니다.");
         }
     }
@@ -38,6 +48,13 @@ public class MemberService {
         return memberRepository.findAll();
     }
 
+    /**
+     * 회원 목록 (id, 이름만)
+     */
+    public List<MemberQueryDto> findMemberDtos() {
+        return memberRepository.findAllDtos();
+    }
+
     public Member findOne(Long memberId) {
         return memberRepository.findById(memberId).orElseThrow(() -> 
             new IllegalArgumentException("Member not found with id: " + memberId));
@@ -50,7 +67,17 @@ public class MemberService {
     public void update(Long id, String name) {
         Member member = memberRepository.findById(id).orElseThrow(() -> 
             new IllegalArgumentException("Member not found with id: " + id));
+        if (Objects.equals(name, member.getName())) {
+            return;
+        }
+        validateDuplicateMember(name);
         member.setName(name);
+        try {
+            memberRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalStateException("이미 존재하는 회원입니다.", e);
+        }
+        memberNameFilter.put(name);
     }
 
 }
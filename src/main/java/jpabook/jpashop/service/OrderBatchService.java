@@ -0,0 +1,322 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.datasource.ReadYourWrites;
+import jpabook.jpashop.domain.*;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.ItemRepositoryV2;
+import jpabook.jpashop.repository.ItemStockRepository;
+import jpabook.jpashop.repository.MemberRepositoryV2;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.stats.SalesRollupRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * 묶음 주문 접수 (group commit)
+ * - 동시에 들어온 단건 주문을 max-size 건까지 모아 트랜잭션 하나로 처리한다.
+ *   커밋(로그 fsync)과 DB 왕복이 주문마다가 아니라 묶음마다 한 번
+ * - 다른 묶음이 처리 중일 때만 max-wait 동안 더 모은다. 한가할 때는 기다리지 않고 바로 처리한다.
+ *   (처리 중인 동안 쌓인 주문이 다음 묶음이 되므로 부하가 클수록 묶음이 커진다)
+ * - 재고 차감은 상품별로 합친 조건부 UPDATE 를 JDBC 배치로 (ItemStockRepository.removeStocksEach)
+ *   주문/주문상품/배송 insert 는 hibernate.jdbc.batch_size 로 묶인다.
+ * - 결과는 주문마다: 재고 부족이나 없는 회원/상품인 주문만 예외를 받고 나머지는 커밋된다.
+ * - 묶음 처리가 커밋 전에 실패하면(DB 오류 등, 롤백됨) 묶음의 주문을 한 건씩 OrderService.order 로 다시 처리한다.
+ *   커밋 자체가 실패하면 이미 반영됐을 수도 있으므로 다시 처리하지 않고 주문마다 예외를 돌려준다.
+ * - 응답은 timeout 까지만 기다린다. 멈출 때 남은 주문은 예외로 끝낸다.
+ * - 커밋은 처리 스레드에서 하므로 복제 DB 구성의 쓰기 기록(ReadYourWrites)은 주문이 성공한 뒤 요청 스레드에서 남긴다.
+ * - jpashop.order-batch.enabled=false 면 바로 OrderService.order 를 호출한다.
+ * 메트릭: jpashop.order-batch.size (트랜잭션 하나로 처리한 주문 수)
+ */
+@Slf4j
+@Service
+public class OrderBatchService {
+
+    private final OrderService orderService;
+    private final MemberRepositoryV2 memberRepository;
+    private final ItemRepositoryV2 itemRepository;
+    private final ItemStockRepository itemStockRepository;
+    private final OrderRepository orderRepository;
+    private final SalesRollupRepository salesRollupRepository;
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadYourWrites readYourWrites; //복제 DB 구성이 아니면 null
+    private final DistributionSummary batchSize;
+    private final boolean enabled;
+    private final int maxSize;
+    private final long maxWaitNanos;
+    private final long timeoutNanos;
+
+    private final BlockingQueue<OrderRequest> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger(); //처리 중인 묶음 수
+    private volatile boolean running = true;
+
+    public OrderBatchService(OrderService orderService,
+                             MemberRepositoryV2 memberRepository,
+                             ItemRepositoryV2 itemRepository,
+                             ItemStockRepository itemStockRepository,
+                             OrderRepository orderRepository,
+                             SalesRollupRepository salesRollupRepository,
+                             EntityManager em,
+                             PlatformTransactionManager transactionManager,
+                             ObjectProvider<ReadYourWrites> readYourWrites,
+                             MeterRegistry meterRegistry,
+                             @Value("${jpashop.order-batch.enabled:true}") boolean enabled,
+                             @Value("${jpashop.order-batch.max-size:64}") int maxSize,
+                             @Value("${jpashop.order-batch.max-wait:2ms}") Duration maxWait,
+                             @Value("${jpashop.order-batch.workers:2}") int workerCount,
+                             @Value("${jpashop.order-batch.timeout:10s}") Duration timeout) {
+        this.orderService = orderService;
+        this.memberRepository = memberRepository;
+        this.itemRepository = itemRepository;
+        this.itemStockRepository = itemStockRepository;
+        this.orderRepository = orderRepository;
+        this.salesRollupRepository = salesRollupRepository;
+        this.em = em;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readYourWrites = readYourWrites.getIfAvailable();
+        this.batchSize = DistributionSummary.builder("jpashop.order-batch.size").register(meterRegistry);
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.timeoutNanos = timeout.toNanos();
+
+        if (enabled) {
+            for (int i = 0; i < workerCount; i++) {
+                Thread worker = new Thread(this::run, "order-batch-" + i);
+                worker.setDaemon(true);
+                worker.start();
+                workers.add(worker);
+            }
+        }
+    }
+
+    /**
+     * 주문 (묶음이 커밋될 때까지 기다린다)
+     * @return 주문 id
+     */
+    public Long order(Long memberId, Long itemId, int count) {
+        if (!enabled || !running) {
+            return orderService.order(memberId, itemId, count);
+        }
+
+        OrderRequest request = new OrderRequest(memberId, itemId, count);
+        queue.add(request);
+        if (!running && queue.remove(request)) {
+            //close() 가 큐를 비운 뒤에 넣었으면 처리할 스레드가 없다.
+            throw new IllegalStateException("주문 접수가 중단되었습니다.");
+        }
+        try {
+            Long orderId = request.future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            if (readYourWrites != null) {
+                readYourWrites.wrote(); //처리 스레드의 커밋은 이 요청에 기록되지 않는다.
+            }
+            return orderId;
+        } catch (TimeoutException e) {
+            if (queue.remove(request)) {
+                throw new IllegalStateException("주문 대기 시간이 초과되었습니다.", e);
+            }
+            throw new IllegalStateException("주문 처리 결과를 확인하지 못했습니다.", e); //처리 중이라 커밋됐을 수도 있다.
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("주문 대기 중 중단되었습니다.", e);
+        }
+    }
+
+    /**
+     * 받은 주문은 모두 처리하고 멈춘다. (처리 스레드가 끝난 뒤에도 남은 주문은 예외로 끝낸다)
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            worker.join(10_000);
+        }
+        OrderRequest request;
+        while ((request = queue.poll()) != null) {
+            request.future.completeExceptionally(new IllegalStateException("주문 접수가 중단되었습니다."));
+        }
+    }
+
+    /**
+     * 묶음 처리 스레드 (DB 커넥션을 쓰는 중에 interrupt 하지 않도록 running 플래그로 멈춘다)
+     */
+    private void run() {
+        List<OrderRequest> batch = new ArrayList<>(maxSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                OrderRequest first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + (inFlight.get() > 0 ? maxWaitNanos : 0);
+                while (batch.size() < maxSize) {
+                    queue.drainTo(batch, maxSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() == maxSize || remaining <= 0) {
+                        break;
+                    }
+                    OrderRequest next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            inFlight.incrementAndGet();
+            try {
+                process(batch);
+            } finally {
+                inFlight.decrementAndGet(); //응답받은 요청의 다음 주문이 이 묶음을 기다리지 않도록 응답 전에 줄인다.
+            }
+            reply(batch);
+            batch.clear();
+        }
+    }
+
+    private void process(List<OrderRequest> batch) {
+        batchSize.record(batch.size());
+        boolean[] placed = {false};
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                placeOrders(batch);
+                em.flush(); //insert/update 오류가 커밋이 아니라 여기서 나도록
+                placed[0] = true;
+            });
+        } catch (RuntimeException e) {
+            if (placed[0]) {
+                //커밋 중(또는 커밋 후 콜백에서) 실패: 반영 여부를 알 수 없으므로 다시 처리하면 주문이 두 번 들어갈 수 있다.
+                log.error("묶음 주문 {} 건 커밋 실패, 다시 처리하지 않음: {}", batch.size(), e.toString());
+                for (OrderRequest request : batch) {
+                    request.orderId = null;
+                    request.error = e;
+                }
+                return;
+            }
+            log.warn("묶음 주문 {} 건 실패, 한 건씩 다시 처리: {}", batch.size(), e.toString());
+            for (OrderRequest request : batch) {
+                request.orderId = null;
+                request.error = null;
+                try {
+                    request.orderId = orderService.order(request.memberId, request.itemId, request.count);
+                } catch (RuntimeException orderError) {
+                    request.error = orderError;
+                }
+            }
+        }
+    }
+
+    /**
+     * 커밋된 뒤에 응답
+     */
+    private void reply(List<OrderRequest> batch) {
+        for (OrderRequest request : batch) {
+            if (request.error != null) {
+                request.future.completeExceptionally(request.error);
+            } else {
+                request.future.complete(request.orderId);
+            }
+        }
+    }
+
+    /**
+     * 묶음 하나를 트랜잭션 하나로 처리 (회원 조회 1번, 재고 차감 배치 1~2번, 상품 조회 1번, insert 배치)
+     */
+    private void placeOrders(List<OrderRequest> batch) {
+        //회원 조회
+        Map<Long, Member> members = memberRepository.findAllById(batch.stream().map(r -> r.memberId).collect(toList())).stream()
+                .collect(toMap(Member::getId, identity()));
+        List<OrderRequest> requests = new ArrayList<>(batch.size());
+        for (OrderRequest request : batch) {
+            request.orderId = null;
+            request.error = null;
+            if (members.containsKey(request.memberId)) {
+                requests.add(request);
+            } else {
+                request.error = new IllegalArgumentException("Member not found with id: " + request.memberId);
+            }
+        }
+
+        //재고 차감 (상품별로 합쳐서)
+        boolean[] removed = itemStockRepository.removeStocksEach(
+                requests.stream().map(r -> r.itemId).collect(toList()),
+                requests.stream().map(r -> r.count).collect(toList()));
+        //차감하면서 2차 캐시 항목을 잠갔으므로 (커밋까지) DB 에서 최신 상품을 읽는다.
+        Map<Long, Item> items = itemRepository.findAllById(requests.stream().map(r -> r.itemId).collect(toList())).stream()
+                .collect(toMap(Item::getId, identity()));
+
+        for (int i = 0; i < requests.size(); i++) {
+            OrderRequest request = requests.get(i);
+            Item item = items.get(request.itemId);
+            if (item == null) {
+                request.error = new IllegalArgumentException("Item not found with id: " + request.itemId);
+                continue;
+            }
+            if (!removed[i]) {
+                request.error = new NotEnoughStockException("need more stock");
+                continue;
+            }
+
+            Member member = members.get(request.memberId);
+            Delivery delivery = new Delivery();
+            delivery.setAddress(member.getAddress());
+            delivery.setStatus(DeliveryStatus.READY);
+            Order order = Order.createOrder(member, delivery, OrderItem.createReservedOrderItem(item, item.getPrice(), request.count));
+
+            orderRepository.save(order);
+            salesRollupRepository.addDelta(order.getId(), 1);
+            request.orderId = order.getId();
+        }
+    }
+
+    private static class OrderRequest {
+
+        private final Long memberId;
+        private final Long itemId;
+        private final int count;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+        private Long orderId;
+        private RuntimeException error;
+
+        OrderRequest(Long memberId, Long itemId, int count) {
+            this.memberId = memberId;
+            this.itemId = itemId;
+            this.count = count;
+        }
+    }
+}
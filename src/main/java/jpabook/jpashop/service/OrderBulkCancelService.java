@@ -0,0 +1,124 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.ItemStockRepository;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.stats.SalesRollupRepository;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * 주문 일괄 취소 (사기 주문 정리, 결제 실패 배치 등)
+ * - 주문을 하나씩 읽어 Order.cancel() 하지 않고 청크 단위 집합 연산으로 처리한다.
+ *   청크당 SQL 4개: 취소 가능한 주문 잠금 조회, 상품별로 합친 재고 증가, 매출 집계 취소 기록, 주문 상태 변경
+ * - 청크마다 별도 트랜잭션으로 커밋하므로 중간에 실패해도 앞 청크는 유지되고 잠금도 짧다.
+ * - 청크가 끝날 때마다 진행 상황을 로그로 남긴다.
+ */
+@Slf4j
+@Service
+public class OrderBulkCancelService {
+
+    private final OrderRepository orderRepository;
+    private final ItemStockRepository itemStockRepository;
+    private final SalesRollupRepository salesRollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public OrderBulkCancelService(OrderRepository orderRepository,
+                                  ItemStockRepository itemStockRepository,
+                                  SalesRollupRepository salesRollupRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${jpashop.order-cancel.chunk-size:500}") int chunkSize) {
+        this.orderRepository = orderRepository;
+        this.itemStockRepository = itemStockRepository;
+        this.salesRollupRepository = salesRollupRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 주문 id 로 일괄 취소
+     * 없는 주문, 이미 취소된 주문, 배송완료된 주문은 건너뛴다.
+     */
+    public BulkCancelResult cancelOrders(Collection<Long> orderIds) {
+        List<Long> ids = new ArrayList<>(new TreeSet<>(orderIds));
+        BulkCancelResult result = new BulkCancelResult();
+        for (int i = 0; i < ids.size(); i += chunkSize) {
+            List<Long> chunk = ids.subList(i, Math.min(i + chunkSize, ids.size()));
+            result.add(chunk.size(), cancelChunk(chunk));
+            log.info("주문 일괄 취소 진행: {}/{} 처리, {} 취소", result.getProcessed(), ids.size(), result.getCanceled());
+        }
+        return result;
+    }
+
+    /**
+     * 검색 조건(회원 이름, 완전 일치)에 맞는 ORDER 상태 주문을 모두 취소
+     * 조건 없이 전체 주문을 취소하는 것은 막는다.
+     */
+    public BulkCancelResult cancelOrders(OrderSearch orderSearch) {
+        if (!StringUtils.hasText(orderSearch.getMemberName())) {
+            throw new IllegalArgumentException("일괄 취소할 주문 조건이 없습니다.");
+        }
+
+        BulkCancelResult result = new BulkCancelResult();
+        Long lastOrderId = 0L;
+        while (true) {
+            Long after = lastOrderId;
+            List<Long> chunk = transactionTemplate.execute(status ->
+                    orderRepository.findCancelableIds(orderSearch, after, chunkSize));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            result.add(chunk.size(), cancelChunk(chunk));
+            log.info("주문 일괄 취소 진행: {} 처리, {} 취소", result.getProcessed(), result.getCanceled());
+
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+            lastOrderId = chunk.get(chunk.size() - 1);
+        }
+        return result;
+    }
+
+    /**
+     * 청크 하나를 트랜잭션 하나로 취소
+     * @return 취소한 주문 수
+     */
+    private int cancelChunk(List<Long> orderIds) {
+        return transactionTemplate.execute(status -> {
+            List<Long> cancelable = orderRepository.findCancelableIdsForUpdate(orderIds);
+            if (cancelable.isEmpty()) {
+                return 0;
+            }
+            itemStockRepository.addStocksOfOrders(cancelable);
+            salesRollupRepository.addDeltas(cancelable, -1);
+            return orderRepository.cancelAll(cancelable);
+        });
+    }
+
+    @Getter
+    public static class BulkCancelResult {
+
+        private int processed; //확인한 주문 수
+        private int canceled; //취소한 주문 수
+
+        private void add(int processed, int canceled) {
+            this.processed += processed;
+            this.canceled += canceled;
+        }
+
+        public int getSkipped() {
+            return processed - canceled;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package jpabook.jpashop.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jpabook.jpashop.repository.order.query.OrderFlatDto;
+import jpabook.jpashop.repository.order.query.OrderFlatGrouper;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.stream.Stream;
+
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class OrderExportService {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final OrderQueryRepository orderQueryRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 주문 전체를 NDJSON(한 줄에 주문 하나)으로 내보낸다.
+     * - 커서에서 한 row 씩 읽어 주문 하나가 완성되는 즉시(OrderFlatGrouper) 쓰고 버리므로 주문 수와 관계없이 메모리 사용량이 일정하다.
+     * - 조회 결과는 DTO 라 영속성 컨텍스트에 쌓이지 않는다.
+     * @return 내보낸 주문 수
+     */
+    public long exportOrders(OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        long count = 0;
+        try (Stream<OrderFlatDto> rows = orderQueryRepository.streamAllByDto_flat(FETCH_SIZE);
+             SequenceWriter writer = objectMapper.writer()
+                     .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                     .withRootValueSeparator("\n")
+                     .writeValues(generator)) {
+
+            OrderFlatGrouper orders = new OrderFlatGrouper(rows.iterator());
+            while (orders.hasNext()) {
+                writer.write(orders.next());
+                count++;
+            }
+        }
+        if (count > 0) {
+            generator.writeRaw('\n');
+        }
+        generator.close();
+        return count;
+    }
+}
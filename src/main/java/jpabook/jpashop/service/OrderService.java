@@ -2,12 +2,22 @@ package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.*;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.NotEnoughStockException;
 import jpabook.jpashop.repository.*;
+import jpabook.jpashop.repository.stats.SalesRollupRepository;
+import jpabook.jpashop.retry.RetryOnConflict;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
+
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
 
 @Service
 @Transactional(readOnly = true)
@@ -17,15 +27,40 @@ public class OrderService {
 	private final OrderRepository orderRepository;
 	private final MemberRepositoryV2 memberRepository;
 	private final ItemRepositoryV2 itemRepository;
+	private final ItemStockRepository itemStockRepository;
+	private final SalesRollupRepository salesRollupRepository;
 
 	/**
 	 * 주문
 	 */
+	@RetryOnConflict
 	@Transactional
 	public Long order(Long memberId, Long itemId, int count) {
 
 		//엔티티 조회
-		Member member = aaabbbccc(memberId);
+		Member member = findMember(memberId);
+
+		return placeOrder(member, itemId, count);
+	}
+
+	/**
+	 * 주문 저널 이벤트 반영 (OrderJournalProjector 의 배치 트랜잭션 안에서만 호출)
+	 * 없는 회원/상품, 재고 부족이면 아무것도 바꾸지 않고 예외를 던진다. 배치 트랜잭션은 롤백하지 않고 그 이벤트만 거절로 기록한다.
+	 */
+	@Transactional(propagation = Propagation.MANDATORY, noRollbackFor = {IllegalArgumentException.class, NotEnoughStockException.class})
+	public Long orderFromJournal(Long memberId, Long itemId, int count) {
+		Member member = findMember(memberId);
+		//없는 상품은 여기서 거른다. (ItemStockRepository 가 던지면 @Repository 예외 변환으로 IllegalArgumentException 이 아니게 된다)
+		if (!itemRepository.existsById(itemId)) {
+			throw new IllegalArgumentException("Item not found with id: " + itemId);
+		}
+		return placeOrder(member, itemId, count);
+	}
+
+	private Long placeOrder(Member member, Long itemId, int count) {
+		//재고 차감 (조건부 UPDATE 한 번, 재고가 부족하면 NotEnoughStockException)
+		itemStockRepository.removeStock(itemId, count);
+		//차감하면서 2차 캐시 항목을 잠갔으므로 (커밋까지) DB 에서 최신 상품을 읽는다.
 		Item item = itemRepository.findById(itemId).orElseThrow(() ->
 				new IllegalArgumentException("Item not found with id: " + itemId));
 
@@ -35,34 +70,97 @@ public class OrderService {
 		delivery.setStatus(DeliveryStatus.READY);
 
 		//주문상품 생성
-		OrderItem orderItem = OrderItem.createOrderItem(item, item.getPrice(), count);
+		OrderItem orderItem = OrderItem.createReservedOrderItem(item, item.getPrice(), count);
 
 		//주문 생성
 		Order order = Order.createOrder(member, delivery, orderItem);
 
 		//주문 저장
 		orderRepository.save(order);
+		//매출 집계 반영 예약
+		salesRollupRepository.addDelta(order.getId(), 1);
+
+		return order.getId();
+	}
+
+	/**
+	 * 장바구니 주문: 주문 1건 + 주문상품 N건
+	 * - 재고 차감은 JDBC 배치 한 번, 상품 조회는 findAllById 한 번
+	 * - 주문상품 insert 는 hibernate.jdbc.batch_size 로 묶여서 나간다.
+	 * @param itemCounts 상품 id -> 수량 (순서대로 주문상품 생성)
+	 */
+	@RetryOnConflict
+	@Transactional
+	public Long checkout(Long memberId, Map<Long, Integer> itemCounts) {
+		if (itemCounts.isEmpty()) {
+			throw new IllegalArgumentException("장바구니가 비어 있습니다.");
+		}
+
+		//엔티티 조회
+		Member member = findMember(memberId);
+
+		//재고 차감
+		itemStockRepository.removeStocks(itemCounts);
+		Map<Long, Item> items = itemRepository.findAllById(itemCounts.keySet()).stream()
+				.collect(toMap(Item::getId, identity()));
+
+		//배송정보 생성
+		Delivery delivery = new Delivery();
+		delivery.setAddress(member.getAddress());
+		delivery.setStatus(DeliveryStatus.READY);
+
+		//주문상품 생성
+		OrderItem[] orderItems = itemCounts.entrySet().stream()
+				.map(e -> {
+					Item item = items.get(e.getKey());
+					return OrderItem.createReservedOrderItem(item, item.getPrice(), e.getValue());
+				})
+				.toArray(OrderItem[]::new);
+
+		//주문 생성
+		Order order = Order.createOrder(member, delivery, orderItems);
+
+		//주문 저장
+		orderRepository.save(order);
+		//매출 집계 반영 예약
+		salesRollupRepository.addDelta(order.getId(), 1);
 
 		return order.getId();
 	}
 
 	/**
 	 * 주문 취소
+	 * 같은 주문을 동시에 취소하면 나중 커밋은 @Version 충돌로 롤백되고, 재시도 때 이미 취소된 주문이라 예외가 난다. (재고는 한 번만 복구)
 	 */
+	@RetryOnConflict
 	@Transactional
 	public void cancelOrder(Long orderId) {
-		//주문 엔티티 조회
-		Order order = orderRepository.findOne(orderId);
+		//주문 엔티티 조회 (주문상품까지 한번에 조회)
+		Order order = orderRepository.findOneWithItems(orderId);
 		//주문 취소
-		order.cancel();
+		order.markCanceled();
+		//재고 복구 (상품을 읽지 않고 DB 에서 바로 증가)
+		for (OrderItem orderItem : order.getOrderItems()) {
+			itemStockRepository.addStock(orderItem.getItem().getId(), orderItem.getCount());
+		}
+		//매출 집계에서 빼기 예약
+		salesRollupRepository.addDelta(orderId, -1);
 	}
 
-	private Member aaabbbccc(Long memberId) {
-		return memberRepository.findById(memberId).orElse(null);
+	private Member findMember(Long memberId) {
+		return memberRepository.findById(memberId).orElseThrow(() ->
+				new IllegalArgumentException("Member not found with id: " + memberId));
 	}
 
 	//검색
 	public List<Order> findOrders(OrderSearch orderSearch) {
 		return orderRepository.findAllByString(orderSearch);
 	}
+
+	/**
+	 * 검색 (count 쿼리 없이 다음 페이지 여부만)
+	 */
+	public Slice<Order> searchOrders(OrderSearch orderSearch, Pageable pageable) {
+		return orderRepository.search(orderSearch, pageable);
+	}
 }
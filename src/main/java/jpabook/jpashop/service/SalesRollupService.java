@@ -0,0 +1,100 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.stats.SalesRollupRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 매출 집계 테이블 유지
+ * - 주문/취소 트랜잭션은 sales_delta 에 한 줄만 추가한다. (집계 row 잠금 경합 없음)
+ * - fold(): 주기적으로 미반영 기록을 모아 집계 테이블에 한 번에 더하고 지운다. 노드 안에서는 한 스레드만 실행한다.
+ * - rebuild(): 집계를 주문 테이블에서 다시 계산 (백필/복구용, 여러 번 실행해도 결과가 같다)
+ *   주문 이력 전체를 읽으므로 POST /api/stats/rebuild 로 필요할 때만 실행한다. (rebuild-on-startup 은 기본 꺼짐)
+ * 조회(/api/stats)는 집계 테이블만 읽으므로 주문 이력 크기와 관계없이 빠르고, 최대 fold 주기만큼 늦게 반영된다.
+ */
+@Slf4j
+@Service
+public class SalesRollupService {
+
+    private final SalesRollupRepository salesRollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int foldBatchSize;
+    private final boolean rebuildOnStartup;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public SalesRollupService(SalesRollupRepository salesRollupRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${jpashop.stats.fold-batch-size:1000}") int foldBatchSize,
+                              @Value("${jpashop.stats.rebuild-on-startup:false}") boolean rebuildOnStartup) {
+        this.salesRollupRepository = salesRollupRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.foldBatchSize = foldBatchSize;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    @Scheduled(fixedDelayString = "${jpashop.stats.fold-interval-ms:1000}")
+    public void scheduledFold() {
+        try {
+            fold();
+        } catch (RuntimeException e) {
+            log.warn("매출 집계 반영 실패, 다음 주기에 다시 시도: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 미반영 기록을 모두 집계에 반영 (foldBatchSize 건씩 트랜잭션 하나)
+     * @return 반영한 기록 수
+     */
+    public int fold() {
+        lock.lock();
+        try {
+            int total = 0;
+            int folded;
+            do {
+                folded = transactionTemplate.execute(status -> {
+                    List<Long> deltaIds = salesRollupRepository.lockPendingDeltaIds(foldBatchSize);
+                    if (deltaIds.isEmpty()) {
+                        return 0;
+                    }
+                    salesRollupRepository.fold(deltaIds);
+                    salesRollupRepository.deleteDeltas(deltaIds);
+                    return deltaIds.size();
+                });
+                total += folded;
+            } while (folded == foldBatchSize);
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 집계를 주문 테이블에서 다시 계산
+     * 미반영 기록은 남겨 두고 계산에서 빼므로 다음 fold 가 그대로 더한다. (SalesRollupRepository.rebuild)
+     */
+    public void rebuild() {
+        lock.lock();
+        try {
+            transactionTemplate.executeWithoutResult(status -> salesRollupRepository.rebuild());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (rebuildOnStartup) {
+            rebuild();
+            log.info("매출 집계 재계산 완료");
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.service.MemberService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class MemberApiControllerTest {
+
+    @Autowired MockMvc mockMvc;
+    @Autowired MemberService memberService;
+
+    @Test
+    public void 회원목록V3_lastId_페이징() throws Exception {
+        //given
+        Long id1 = join("회원A");
+        Long id2 = join("회원B");
+        Long id3 = join("회원C");
+
+        //when, then
+        mockMvc.perform(get("/api/v3/members")
+                        .param("lastId", String.valueOf(id1 - 1))
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(2))
+                .andExpect(jsonPath("$.data[0].id").value(id1))
+                .andExpect(jsonPath("$.data[1].id").value(id2))
+                .andExpect(jsonPath("$.nextLastId").value(id2));
+
+        mockMvc.perform(get("/api/v3/members")
+                        .param("lastId", id2.toString())
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(1))
+                .andExpect(jsonPath("$.data[0].id").value(id3))
+                .andExpect(jsonPath("$.data[0].name").value("회원C"))
+                .andExpect(jsonPath("$.nextLastId").doesNotExist());
+    }
+
+    @Test
+    public void 회원목록V3_잘못된_요청은_400() throws Exception {
+        mockMvc.perform(get("/api/v3/members").param("lastId", "-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v3/members").param("limit", "-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v3/members").param("limit", "1001"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v3/members").param("lastId", "abc"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private Long join(String name) {
+        Member member = new Member();
+        member.setName(name);
+        return memberService.join(member);
+    }
+}
@@ -0,0 +1,115 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class OrderApiControllerTest {
+
+    @Autowired MockMvc mockMvc;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+    @Autowired OrderService orderService;
+
+    @Test
+    public void 잘못된_커서와_limit_은_400() throws Exception {
+        for (String url : new String[]{"/api/v3.2/orders", "/api/v6.1/orders"}) {
+            mockMvc.perform(get(url).param("cursor", "!!!"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(get(url).param("limit", "0"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(get(url).param("limit", "1001"))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Test
+    public void 주문V6_1_주문단위로_묶고_마지막_페이지() throws Exception {
+        //given
+        Long memberId = createMember("회원1");
+        Long book1 = createBook("JPA1");
+        Long book2 = createBook("JPA2");
+        Map<Long, Integer> twoItems = new LinkedHashMap<>();
+        twoItems.put(book1, 1);
+        twoItems.put(book2, 2);
+        Long orderId1 = orderService.checkout(memberId, twoItems);
+        Long orderId2 = orderService.order(memberId, book1, 3);
+        Long orderId3 = orderService.checkout(memberId, twoItems);
+        String cursor = OrderCursor.encode(orderId1 - 1);
+
+        //when, then
+        String nextCursor = OrderCursor.encode(orderId2);
+        mockMvc.perform(get("/api/v6.1/orders").param("cursor", cursor).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(2))
+                .andExpect(jsonPath("$.data[0].orderId").value(orderId1))
+                .andExpect(jsonPath("$.data[0].orderItems.length()").value(2))
+                .andExpect(jsonPath("$.data[1].orderId").value(orderId2))
+                .andExpect(jsonPath("$.data[1].orderItems.length()").value(1))
+                .andExpect(jsonPath("$.data[1].orderItems[0].count").value(3))
+                .andExpect(jsonPath("$.nextCursor").value(nextCursor));
+
+        //남은 주문이 딱 limit 개면 다음 커서가 없다.
+        mockMvc.perform(get("/api/v6.1/orders").param("cursor", nextCursor).param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(1))
+                .andExpect(jsonPath("$.data[0].orderId").value(orderId3))
+                .andExpect(jsonPath("$.data[0].orderItems.length()").value(2))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    public void 주문V3_2_마지막_페이지() throws Exception {
+        //given
+        Long memberId = createMember("회원1");
+        Long bookId = createBook("JPA1");
+        Long orderId1 = orderService.order(memberId, bookId, 1);
+        Long orderId2 = orderService.order(memberId, bookId, 1);
+
+        //when, then
+        mockMvc.perform(get("/api/v3.2/orders").param("cursor", OrderCursor.encode(orderId1 - 1)).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(2))
+                .andExpect(jsonPath("$.data[0].orderId").value(orderId1))
+                .andExpect(jsonPath("$.data[1].orderId").value(orderId2))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    private Long createMember(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        return memberService.join(member);
+    }
+
+    private Long createBook(String name) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(10000);
+        book.setStockQuantity(100);
+        itemService.saveItem(book);
+        return book.getId();
+    }
+}
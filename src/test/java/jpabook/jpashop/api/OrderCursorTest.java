@@ -0,0 +1,41 @@
+package jpabook.jpashop.api;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.Assert.*;
+
+public class OrderCursorTest {
+
+    @Test
+    public void 커서_인코딩_디코딩() throws Exception {
+        assertEquals(Long.valueOf(12345L), OrderCursor.decode(OrderCursor.encode(12345L)));
+    }
+
+    @Test
+    public void 커서가_없으면_처음부터() throws Exception {
+        assertEquals(Long.valueOf(0L), OrderCursor.decode(null));
+        assertEquals(Long.valueOf(0L), OrderCursor.decode(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void 잘못된_base64_커서() throws Exception {
+        OrderCursor.decode("!!!");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void 접두어가_다른_커서() throws Exception {
+        OrderCursor.decode(encodeRaw("member:1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void 숫자가_아닌_커서() throws Exception {
+        OrderCursor.decode(encodeRaw("order:abc"));
+    }
+
+    private static String encodeRaw(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,59 @@
+package jpabook.jpashop.datasource;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 복제 DB 구성에서 묶음 주문(다른 스레드에서 커밋)도 쓰기 후 읽기 쿠키를 남기는지
+ * (테스트 application.yml 에는 주 DB 설정이 없으므로 복제 DB 와 같은 메모리 DB 를 지정한다)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"spring.datasource.hikari.jdbc-url=jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.datasource.hikari.username=sa", "jpashop.order-batch.enabled=true"})
+@ActiveProfiles("replica")
+@AutoConfigureMockMvc
+public class ReadYourWritesOrderTest {
+
+    @Autowired MockMvc mockMvc;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+
+    @Test
+    public void 묶음주문_후_쓰기_쿠키() throws Exception {
+        //given
+        Member member = new Member();
+        member.setName("회원1");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        Long memberId = memberService.join(member);
+
+        Book book = new Book();
+        book.setName("시골 JPA");
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        itemService.saveItem(book);
+
+        //when, then
+        mockMvc.perform(post("/order")
+                        .param("memberId", memberId.toString())
+                        .param("itemId", book.getId().toString())
+                        .param("count", "2"))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(cookie().exists(ReadYourWrites.COOKIE_NAME));
+    }
+
+}
@@ -0,0 +1,150 @@
+package jpabook.jpashop.datasource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.Cookie;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 주 DB 1개 + 복제 DB 2개를 서로 다른 H2 메모리 DB 로 만들고, 각 DB 의 node 테이블에 자기 이름을 넣어서 어디로 갔는지 확인한다.
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    ReplicaRoutingDataSource routing;
+    boolean replica1Down;
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate writeTx;
+    TransactionTemplate readTx;
+
+    @Before
+    public void setUp() {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", new DelegatingDataSource(h2("replica-1")) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                if (replica1Down) {
+                    throw new SQLException("Connection refused");
+                }
+                return super.getConnection();
+            }
+        });
+        replicas.put("replica-2", h2("replica-2"));
+        routing = new ReplicaRoutingDataSource(h2("primary"), replicas, new ReadYourWrites(Duration.ofSeconds(5)));
+
+        jdbcTemplate = new JdbcTemplate(routing);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+        writeTx = new TransactionTemplate(transactionManager);
+        readTx = new TransactionTemplate(transactionManager);
+        readTx.setReadOnly(true);
+    }
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void 읽기전용은_복제DB_라운드로빈() throws Exception {
+        assertEquals("replica-1", readNode());
+        assertEquals("replica-2", readNode());
+        assertEquals("replica-1", readNode());
+        assertEquals("primary", writeTx.execute(status -> node()));
+        assertEquals("트랜잭션 밖은 주 DB", "primary", node());
+    }
+
+    @Test
+    public void 쓰기후_읽기는_주DB() throws Exception {
+        //given
+        MockHttpServletResponse response = bindRequest(new MockHttpServletRequest());
+
+        //when
+        writeTx.executeWithoutResult(status -> jdbcTemplate.update("update node set name = name"));
+
+        //then
+        assertEquals("같은 요청", "primary", readNode());
+        Cookie cookie = response.getCookie(ReadYourWrites.COOKIE_NAME);
+        assertNotNull(cookie);
+
+        MockHttpServletRequest next = new MockHttpServletRequest();
+        next.setCookies(cookie);
+        bindRequest(next);
+        assertEquals("쿠키를 가진 다음 요청", "primary", readNode());
+
+        bindRequest(new MockHttpServletRequest());
+        assertEquals("다른 클라이언트", "replica-1", readNode());
+    }
+
+    @Test
+    public void 주DB_읽기는_쓰기로_기록하지_않음() throws Exception {
+        //given
+        MockHttpServletResponse response = bindRequest(new MockHttpServletRequest());
+
+        //when
+        String node = ReplicaRoutingDataSource.onPrimary(this::readNode);
+
+        //then
+        assertEquals("primary", node);
+        assertNull(response.getCookie(ReadYourWrites.COOKIE_NAME));
+        assertEquals("범위 밖은 다시 복제 DB", "replica-1", readNode());
+    }
+
+    @Test
+    public void 비정상_복제DB_제외() throws Exception {
+        //given
+        replica1Down = true;
+
+        //when
+        assertEquals("커넥션을 못 얻으면 주 DB 로", "primary", readNode());
+
+        //then
+        assertEquals(1, routing.getHealthyReplicas().size());
+        assertEquals("replica-2", readNode());
+        assertEquals("replica-2", readNode());
+
+        replica1Down = false;
+        routing.checkReplicas();
+        assertEquals(2, routing.getHealthyReplicas().size());
+    }
+
+    private String readNode() {
+        return readTx.execute(status -> node());
+    }
+
+    private String node() {
+        return jdbcTemplate.queryForObject("select name from node", String.class);
+    }
+
+    private MockHttpServletResponse bindRequest(MockHttpServletRequest request) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+        return response;
+    }
+
+    private static DataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "-" + System.identityHashCode(name) + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists node (name varchar(20))");
+        jdbcTemplate.execute("delete from node");
+        jdbcTemplate.update("insert into node values (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,168 @@
+package jpabook.jpashop.journal;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.journal.OrderJournalResult;
+import jpabook.jpashop.journal.OrderJournalStatus.Status;
+import jpabook.jpashop.repository.journal.OrderJournalRepository;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+
+/**
+ * 반영이 별도 스레드에서 커밋되므로 @Transactional 을 붙이지 않는다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"jpashop.order-journal.enabled=true", "jpashop.order-journal.journal-id=node-a",
+        "jpashop.order-journal.projector-batch-size=2"})
+public class OrderJournalServiceTest {
+
+    @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+    @Autowired OrderJournalService orderJournalService;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+    @Autowired OrderJournalRepository orderJournalRepository;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void journalDir(DynamicPropertyRegistry registry) throws IOException {
+        Path dir = Files.createTempDirectory("order-journal");
+        registry.add("jpashop.order-journal.dir", dir::toString);
+    }
+
+    @Test
+    public void 저널주문_반영되고_재고부족은_거절() throws Exception {
+        //given
+        Long memberId = createMember();
+        Long itemId = createBook(5);
+        //다른 노드가 같은 순번으로 남긴 결과
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (long seq = 1; seq <= 100; seq++) {
+                orderJournalRepository.save(OrderJournalResult.rejected("node-b", seq, "다른 노드"));
+            }
+        });
+
+        //when
+        long first = orderJournalService.submit(memberId, itemId, 3);
+        long second = orderJournalService.submit(memberId, itemId, 3); //재고 2개 남음
+        long third = orderJournalService.submit(memberId, itemId, 2);
+
+        //then
+        assertTrue(first < second && second < third);
+        assertEquals(Status.APPLIED, awaitApplied(first).getStatus());
+        OrderJournalStatus rejected = awaitApplied(second);
+        assertEquals(Status.REJECTED, rejected.getStatus());
+        assertEquals("need more stock", rejected.getReason());
+        assertNotNull(awaitApplied(third).getOrderId());
+        assertEquals(0, itemService.findOne(itemId).getStockQuantity());
+        assertEquals(Status.UNKNOWN, orderJournalService.status(third + 1000).getStatus());
+    }
+
+    @Test
+    public void 없는_상품은_거절하고_다음_주문은_반영() throws Exception {
+        //given
+        Long memberId = createMember();
+        Long itemId = createBook(5);
+
+        //when
+        long unknown = orderJournalService.submit(memberId, -1L, 1);
+        long next = orderJournalService.submit(memberId, itemId, 1);
+
+        //then
+        OrderJournalStatus rejected = awaitApplied(unknown);
+        assertEquals(Status.REJECTED, rejected.getStatus());
+        assertEquals("Item not found with id: -1", rejected.getReason());
+        assertEquals("없는 상품 때문에 반영이 멈추면 안 된다.", Status.APPLIED, awaitApplied(next).getStatus());
+        assertEquals(4, itemService.findOne(itemId).getStockQuantity());
+    }
+
+    @Test
+    public void 다시_열면_찢어진_레코드는_잘라내고_이어서_기록() throws Exception {
+        //given
+        Path dir = temp.newFolder().toPath();
+        try (OrderJournal journal = new OrderJournal(dir, 1024, 16, 0, events -> {})) {
+            for (int i = 1; i <= 3; i++) {
+                journal.append(1L, 2L, i).join();
+            }
+        }
+        Path segment = segments(dir).get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[OrderEvent.SIZE / 2])); //쓰다가 죽은 레코드
+        }
+
+        //when
+        List<OrderEvent> replayed = new ArrayList<>();
+        try (OrderJournal journal = new OrderJournal(dir, 1024, 16, 0, events -> {})) {
+            journal.replay(1, replayed::add);
+
+            //then
+            assertEquals(3, journal.getRecoveredLastSeq());
+            assertEquals(3 * OrderEvent.SIZE, Files.size(segment));
+            assertEquals(4, journal.append(1L, 2L, 4).join().getSeq());
+        }
+        assertEquals(List.of(2L, 3L), replayed.stream().map(OrderEvent::getSeq).collect(toList()));
+        assertEquals(3, replayed.get(1).getCount());
+    }
+
+    private OrderJournalStatus awaitApplied(long seq) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            OrderJournalStatus status = orderJournalService.status(seq);
+            if (status.getStatus() != Status.PENDING) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+        fail("주문 저널이 반영되지 않았다: " + seq);
+        return null;
+    }
+
+    private List<Path> segments(Path dir) {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().collect(toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Long createBook(int stockQuantity) {
+        Book book = new Book();
+        book.setName("저널 도서");
+        book.setPrice(10000);
+        book.setStockQuantity(stockQuantity);
+        itemService.saveItem(book);
+        return book.getId();
+    }
+
+    private Long createMember() {
+        Member member = new Member();
+        member.setName("저널주문-" + System.nanoTime());
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        return memberService.join(member);
+    }
+}
@@ -0,0 +1,31 @@
+package jpabook.jpashop.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.service.MemberService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "jpashop.metrics.repository-timers=true")
+public class MethodTimerAspectRepositoryTest {
+
+    @Autowired MemberService memberService;
+    @Autowired MeterRegistry meterRegistry;
+
+    @Test
+    public void 리포지토리_호출시간() throws Exception {
+        //when
+        memberService.findMembers();
+
+        //then
+        assertNotNull("Spring Data 리포지토리는 인터페이스 이름으로 기록",
+                meterRegistry.find(MethodTimerAspect.NAME).tag("class", "MemberRepositoryV2").timer());
+        assertNotNull("서비스도 같이 기록",
+                meterRegistry.find(MethodTimerAspect.NAME).tags("class", "MemberService", "method", "findMembers").timer());
+    }
+}
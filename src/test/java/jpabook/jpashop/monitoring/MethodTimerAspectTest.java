@@ -0,0 +1,57 @@
+package jpabook.jpashop.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.service.MemberService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class MethodTimerAspectTest {
+
+    @Autowired MemberService memberService;
+    @Autowired MeterRegistry meterRegistry;
+
+    @Test
+    public void 서비스_호출시간() throws Exception {
+        //given
+        Member member = new Member();
+        member.setName("timer-member");
+        long joinCount = count("MemberService", "join", "none");
+        long notFoundCount = count("MemberService", "findOne", "IllegalArgumentException");
+        long flushCount = flushCount();
+
+        //when
+        memberService.join(member);
+        try {
+            memberService.findOne(-1L);
+        } catch (IllegalArgumentException e) {
+            //없는 회원
+        }
+
+        //then
+        assertEquals("서비스 호출마다 기록", joinCount + 1, count("MemberService", "join", "none"));
+        assertNull("리포지토리는 기본으로 재지 않는다.", meterRegistry.find(MethodTimerAspect.NAME).tag("class", "MemberRepositoryV2").timer());
+        assertEquals("예외는 exception 태그로 따로 기록", notFoundCount + 1, count("MemberService", "findOne", "IllegalArgumentException"));
+        assertTrue("커밋할 때 flush 기록", flushCount() > flushCount);
+    }
+
+    private long count(String type, String method, String exception) {
+        Timer timer = meterRegistry.find(MethodTimerAspect.NAME)
+                .tags("class", type, "method", method, "exception", exception)
+                .timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private long flushCount() {
+        Timer timer = meterRegistry.find("jpashop.hibernate.flush").tag("type", "flush").timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
@@ -0,0 +1,28 @@
+package jpabook.jpashop.monitoring;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 테스트에서 쿼리 수 예산을 고정하기 위한 도우미
+ * startQueryCount() 이후 실행된 SQL 수를 assertQueryCount(n) 으로 검증한다.
+ * (쓰기 SQL 은 flush 시점에 나가므로 검증 전에 em.flush() 필요)
+ * 시퀀스 조회는 pooled-lo 블록이 떨어질 때만 나가서 앞선 테스트에 따라 달라지므로 세지 않는다.
+ */
+public class QueryAssertions {
+
+    public static void startQueryCount() {
+        QueryCounter.begin();
+    }
+
+    public static void assertQueryCount(long expected) {
+        QueryCounter counter = QueryCounter.end();
+        assertNotNull("startQueryCount() 를 먼저 호출해야 한다.", counter);
+        long sequenceCalls = counter.getStatementShapes().entrySet().stream()
+                .filter(e -> e.getKey().startsWith("call next value for"))
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+        assertEquals("실행된 SQL: " + counter.getStatementShapes(), expected, counter.getStatementCount() - sequenceCalls);
+    }
+}
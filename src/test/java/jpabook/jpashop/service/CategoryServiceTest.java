@@ -0,0 +1,121 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.category.CategoryTree;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static jpabook.jpashop.monitoring.QueryAssertions.assertQueryCount;
+import static jpabook.jpashop.monitoring.QueryAssertions.startQueryCount;
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class CategoryServiceTest {
+
+    @Autowired EntityManager em;
+    @Autowired CategoryService categoryService;
+
+    @Test
+    public void 하위카테고리_상품조회() throws Exception {
+        //given
+        Long book = categoryService.addCategory("도서", null);
+        Long it = categoryService.addCategory("IT", book);
+        Long java = categoryService.addCategory("자바", it);
+        Long novel = categoryService.addCategory("소설", book);
+        Item jpa = createBook("JPA", java);
+        Item spring = createBook("스프링", it);
+        createBook("어린 왕자", novel);
+        em.flush();
+        em.clear();
+
+        //when
+        startQueryCount();
+        CategoryTree tree = categoryService.getTree();
+        List<Long> itemIds = categoryService.findItems(it, 0, 100).stream().map(Item::getId).collect(toList());
+
+        //then
+        assertQueryCount(2); //select(category 전체) 1 + select(category_item + item) 1
+        assertEquals(Arrays.asList(it, java), tree.descendantIds(it));
+        assertEquals(2, tree.path(java).get(2).getDepth());
+        assertEquals(Arrays.asList(jpa.getId(), spring.getId()), itemIds);
+        assertEquals(3, categoryService.findItems(book, 0, 100).size());
+
+        startQueryCount();
+        assertSame("바뀌지 않으면 캐시된 트리", tree, categoryService.getTree());
+        assertQueryCount(0);
+    }
+
+    @Test
+    public void 카테고리_이동() throws Exception {
+        //given
+        Long book = categoryService.addCategory("도서", null);
+        Long it = categoryService.addCategory("IT", book);
+        Long java = categoryService.addCategory("자바", it);
+        long version = categoryService.getTree().getVersion();
+
+        //when
+        categoryService.moveCategory(java, null);
+
+        //then
+        CategoryTree tree = categoryService.getTree();
+        assertNotEquals(version, tree.getVersion());
+        assertEquals(Arrays.asList(it), tree.descendantIds(it));
+        assertEquals(0, tree.find(java).get().getDepth());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void 하위카테고리로_이동() throws Exception {
+        Long book = categoryService.addCategory("도서", null);
+        Long it = categoryService.addCategory("IT", book);
+
+        categoryService.moveCategory(book, it);
+
+        fail("자기 하위 카테고리 밑으로 옮기면 예외가 발생해야 한다.");
+    }
+
+    @Test
+    public void 오래된_트리로_순환_이동_안됨() throws Exception {
+        //given
+        Long book = categoryService.addCategory("도서", null);
+        Long novel = categoryService.addCategory("소설", null);
+        categoryService.getTree();
+        //다른 노드에서 소설을 도서 밑으로 옮긴 상황 (이 노드의 캐시된 트리에는 아직 최상위)
+        em.flush();
+        em.createQuery("update Category c set c.parent.id = :book where c.id = :novel")
+                .setParameter("book", book)
+                .setParameter("novel", novel)
+                .executeUpdate();
+        em.clear();
+
+        //when
+        try {
+            categoryService.moveCategory(book, novel);
+            fail("DB 에서 하위 카테고리인 곳으로 옮기면 예외가 발생해야 한다.");
+        } catch (IllegalArgumentException e) {
+            //then
+            assertEquals("하위 카테고리로 옮길 수 없습니다.", e.getMessage());
+        }
+    }
+
+    private Item createBook(String name, Long categoryId) {
+        Book item = new Book();
+        item.setName(name);
+        item.setPrice(10000);
+        item.setStockQuantity(10);
+        em.persist(item);
+        categoryService.addItem(categoryId, item.getId());
+        return item;
+    }
+}
@@ -0,0 +1,89 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.repository.MemberRepositoryV2;
+import jpabook.jpashop.service.MemberImportService.ImportResult;
+import jpabook.jpashop.service.MemberImportService.RowError;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+
+/**
+ * 청크마다 커밋하므로 @Transactional 을 붙이지 않는다. (이름은 매번 다르게)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "jpashop.member-import.chunk-size=2")
+public class MemberImportServiceTest {
+
+    @Autowired MemberImportService memberImportService;
+    @Autowired MemberService memberService;
+    @Autowired MemberRepositoryV2 memberRepository;
+
+    @Test
+    public void 일괄등록_잘못된_행은_건너뛰고_보고() throws Exception {
+        //given
+        String prefix = "일괄-" + System.nanoTime() + "-";
+        Member existing = new Member();
+        existing.setName(prefix + "기존");
+        memberService.join(existing);
+
+        List<MemberImportRow> rows = Arrays.asList(
+                new MemberImportRow(prefix + "A", "서울", "강가", "123"),
+                new MemberImportRow(" ", null, null, null),
+                new MemberImportRow(prefix + "기존", null, null, null),
+                new MemberImportRow(prefix + "B", null, null, null),
+                new MemberImportRow(prefix + "A", null, null, null)); //다른 청크에서 중복
+
+        //when
+        ImportResult result = memberImportService.importMembers(rows.iterator());
+
+        //then
+        assertEquals(5, result.getTotal());
+        assertEquals(2, result.getImported());
+        assertEquals(Arrays.asList(2, 3, 5), result.getErrors().stream().map(RowError::getRow).collect(toList()));
+        assertEquals("이미 존재하는 회원입니다.", result.getErrors().get(1).getMessage());
+        assertTrue(memberRepository.existsByName(prefix + "B"));
+        assertEquals("서울", memberRepository.findByName(prefix + "A").get(0).getAddress().getCity());
+    }
+
+    @Test
+    public void 일괄등록_읽기_실패하면_중단() throws Exception {
+        //given
+        String prefix = "중단-" + System.nanoTime() + "-";
+        Iterator<MemberImportRow> rows = Arrays.asList(
+                new MemberImportRow(prefix + "A", null, null, null),
+                null).iterator();
+        Iterator<MemberImportRow> broken = new Iterator<MemberImportRow>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public MemberImportRow next() {
+                MemberImportRow row = rows.next();
+                if (row == null) {
+                    throw new IllegalArgumentException("형식 오류");
+                }
+                return row;
+            }
+        };
+
+        //when
+        ImportResult result = memberImportService.importMembers(broken);
+
+        //then
+        assertEquals(1, result.getImported());
+        assertEquals(2, result.getAborted().getRow());
+        assertTrue(memberRepository.existsByName(prefix + "A"));
+    }
+}
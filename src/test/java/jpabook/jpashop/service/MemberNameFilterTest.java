@@ -0,0 +1,42 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.repository.MemberRepositoryV2;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class MemberNameFilterTest {
+
+    @Autowired MemberRepositoryV2 memberRepository;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired EntityManager em;
+
+    @Test
+    public void 채우기_전에는_항상_있을수도_있음() throws Exception {
+        //given
+        Member member = new Member();
+        member.setName("kim");
+        em.persist(member);
+        em.flush();
+        MemberNameFilter filter = new MemberNameFilter(memberRepository, transactionManager, 1000, 0.01);
+
+        //when, then
+        assertTrue("warm up 전에는 모르는 이름도 true", filter.mightContain("처음보는이름"));
+
+        filter.warmUp();
+        assertTrue("DB 에 있는 이름", filter.mightContain("kim"));
+        assertFalse("warm up 후에는 모르는 이름은 false", filter.mightContain("처음보는이름"));
+    }
+}
@@ -2,11 +2,14 @@ package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.MemberRepositoryV2;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
@@ -20,6 +23,9 @@ public class MemberServiceTest {
 
     @Autowired MemberService memberService;
     @Autowired MemberRepository memberRepository;
+    @Autowired MemberRepositoryV2 memberRepositoryV2;
+    @Autowired MemberNameFilter memberNameFilter;
+    @Autowired PlatformTransactionManager transactionManager;
     @Autowired EntityManager em;
 
     @Test
@@ -51,4 +57,77 @@ public class MemberServiceTest {
         //then
         fail("예외가 발생해야 한다.");
     }
-}
\ No newline at end of file
+
+    @Test(expected = IllegalStateException.class)
+    public void 이름_변경_중복_예외() throws Exception {
+        //given
+        Member member1 = new Member();
+        member1.setName("kim");
+        Member member2 = new Member();
+        member2.setName("lee");
+        memberService.join(member1);
+        memberService.join(member2);
+
+        //when
+        memberService.update(member2.getId(), "kim"); //예외가 발생해야 한다!!!
+
+        //then
+        fail("예외가 발생해야 한다.");
+    }
+
+    @Test
+    public void 필터가_모르는_중복_이름은_유니크_제약으로_예외() throws Exception {
+        //given
+        Member other = new Member();
+        other.setName("다른노드회원"); //다른 노드에서 가입해서 이 노드의 필터에는 없는 이름
+        em.persist(other);
+        em.flush();
+        assertFalse(memberNameFilter.mightContain("다른노드회원"));
+
+        Member member = new Member();
+        member.setName("다른노드회원");
+
+        //when
+        try {
+            memberService.join(member);
+            fail("예외가 발생해야 한다.");
+        } catch (IllegalStateException e) {
+            //then
+            assertTrue("중복 확인 쿼리 없이 유니크 제약에서 걸린다.", e.getCause() instanceof DataIntegrityViolationException);
+        }
+    }
+
+    @Test
+    public void 필터_오탐이면_DB로_다시_확인() throws Exception {
+        //given
+        Member member1 = new Member();
+        member1.setName("kim");
+        memberService.join(member1);
+
+        //비트 수가 작은 필터를 가득 채워 모든 이름에 true 가 나오게 한다.
+        MemberNameFilter saturated = new MemberNameFilter(memberRepositoryV2, transactionManager, 1, 0.5);
+        saturated.warmUp();
+        for (int i = 0; i < 1000; i++) {
+            saturated.put("채움" + i);
+        }
+        assertTrue(saturated.mightContain("lee"));
+        MemberService service = new MemberService(memberRepositoryV2, saturated);
+
+        Member member2 = new Member();
+        member2.setName("lee");
+        Member duplicate = new Member();
+        duplicate.setName("kim");
+
+        //when
+        Long savedId = service.join(member2);
+
+        //then
+        assertEquals("없는 이름이면 existsByName 확인 후 가입", member2, memberRepository.findOne(savedId));
+        try {
+            service.join(duplicate);
+            fail("예외가 발생해야 한다.");
+        } catch (IllegalStateException e) {
+            assertNull("유니크 제약 전에 existsByName 에서 걸린다.", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.*;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.service.OrderBulkCancelService.BulkCancelResult;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "jpashop.order-cancel.chunk-size=2")
+@Transactional
+public class OrderBulkCancelServiceTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+    @Autowired OrderBulkCancelService orderBulkCancelService;
+
+    @Test
+    public void 주문_일괄취소() throws Exception {
+        //given
+        Member member = createMember("회원1");
+        Book book1 = createBook("시골 JPA", 10);
+        Book book2 = createBook("토비의 봄", 10);
+
+        Long orderId1 = orderService.order(member.getId(), book1.getId(), 2);
+        Long orderId2 = orderService.order(member.getId(), book1.getId(), 3);
+        Long orderId3 = orderService.order(member.getId(), book2.getId(), 4);
+        Long delivered = orderService.order(member.getId(), book2.getId(), 1);
+        em.find(Order.class, delivered).getDelivery().setStatus(DeliveryStatus.COMP);
+        em.flush();
+
+        //when
+        BulkCancelResult result = orderBulkCancelService.cancelOrders(Arrays.asList(orderId1, orderId2, orderId3, delivered, -1L));
+
+        //then
+        em.clear();
+        assertEquals(5, result.getProcessed());
+        assertEquals(3, result.getCanceled());
+        assertEquals("배송완료, 없는 주문은 건너뛴다.", 2, result.getSkipped());
+        assertEquals(OrderStatus.CANCEL, em.find(Order.class, orderId1).getStatus());
+        assertEquals(OrderStatus.CANCEL, em.find(Order.class, orderId3).getStatus());
+        assertEquals(OrderStatus.ORDER, em.find(Order.class, delivered).getStatus());
+        assertEquals("같은 상품의 주문 수량을 합쳐서 되돌린다.", 10, em.find(Book.class, book1.getId()).getStockQuantity());
+        assertEquals(9, em.find(Book.class, book2.getId()).getStockQuantity());
+    }
+
+    @Test
+    public void 회원이름으로_일괄취소() throws Exception {
+        //given
+        Member member1 = createMember("사기회원");
+        Member member2 = createMember("정상회원");
+        Book book = createBook("시골 JPA", 20);
+
+        for (int i = 0; i < 5; i++) {
+            orderService.order(member1.getId(), book.getId(), 1);
+        }
+        Long normalOrderId = orderService.order(member2.getId(), book.getId(), 1);
+        em.flush();
+
+        //when
+        OrderSearch wildcard = new OrderSearch();
+        wildcard.setMemberName("%");
+        assertEquals("회원 이름은 완전 일치만 본다.", 0, orderBulkCancelService.cancelOrders(wildcard).getCanceled());
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName("사기회원");
+        BulkCancelResult result = orderBulkCancelService.cancelOrders(orderSearch);
+
+        //then
+        em.clear();
+        assertEquals(5, result.getCanceled());
+        assertEquals(OrderStatus.ORDER, em.find(Order.class, normalOrderId).getStatus());
+        assertEquals(19, em.find(Book.class, book.getId()).getStockQuantity());
+    }
+
+    private Book createBook(String name, int stockQuantity) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(10000);
+        book.setStockQuantity(stockQuantity);
+        em.persist(book);
+        return book;
+    }
+
+    private Member createMember(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+}
@@ -0,0 +1,207 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.ItemStockRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 같은 상품에 동시 주문 (트랜잭션을 실제로 커밋해야 하므로 @Transactional 을 붙이지 않는다)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class OrderServiceConcurrencyTest {
+
+    @Autowired OrderService orderService;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+    @Autowired OrderBatchService orderBatchService;
+    @Autowired ItemStockRepository itemStockRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired EntityManagerFactory emf;
+
+    @Test
+    public void 동시주문_초과판매_없음() throws Exception {
+        //given
+        Long memberId = createMember();
+        Long itemId = createBook(100);
+
+        //when
+        int threads = 16;
+        int ordersPerThread = 20;
+        int[] result = orderConcurrently(orderService::order, memberId, itemId, threads, ordersPerThread);
+
+        //then
+        assertEquals("재고만큼만 주문이 성공해야 한다.", 100, result[0]);
+        assertEquals("나머지는 재고 부족으로 실패해야 한다.", threads * ordersPerThread - 100, result[1]);
+        assertEquals("재고가 음수가 되면 안 된다.", 0, itemService.findOne(itemId).getStockQuantity());
+    }
+
+    @Test
+    public void 묶음주문_초과판매_없음() throws Exception {
+        //given
+        Long memberId = createMember();
+        Long itemId = createBook(100);
+
+        //when
+        int threads = 16;
+        int ordersPerThread = 20;
+        int[] result = orderConcurrently(orderBatchService::order, memberId, itemId, threads, ordersPerThread);
+
+        //then
+        assertEquals("재고만큼만 주문이 성공해야 한다.", 100, result[0]);
+        assertEquals("나머지 주문만 재고 부족으로 실패해야 한다.", threads * ordersPerThread - 100, result[1]);
+        assertEquals("재고가 음수가 되면 안 된다.", 0, itemService.findOne(itemId).getStockQuantity());
+    }
+
+    @Test
+    public void 같은_주문_동시취소_재고는_한번만_복구() throws Exception {
+        //given
+        Long memberId = createMember();
+        Long itemId = createBook(10);
+        Long orderId = orderService.order(memberId, itemId, 3);
+
+        //when
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(1);
+        AtomicInteger canceled = new AtomicInteger();
+        AtomicInteger alreadyCanceled = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                ready.await();
+                try {
+                    orderService.cancelOrder(orderId);
+                    canceled.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    alreadyCanceled.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        ready.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //then
+        assertEquals("취소는 한 번만 성공해야 한다.", 1, canceled.get());
+        assertEquals(threads - 1, alreadyCanceled.get());
+        assertEquals("재고는 한 번만 복구되어야 한다.", 10, itemService.findOne(itemId).getStockQuantity());
+    }
+
+    @Test
+    public void 재고_차감중_다른_트랜잭션이_읽은_이전_재고는_캐시에_올라가지_않음() throws Exception {
+        //given
+        Long itemId = createBook(10);
+        itemService.findOne(itemId); //2차 캐시에 올린다.
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        boolean enabled = statistics.isStatisticsEnabled();
+        statistics.setStatisticsEnabled(true);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            //when
+            transactionTemplate.executeWithoutResult(status -> {
+                itemStockRepository.removeStock(itemId, 3);
+                long puts = statistics.getSecondLevelCachePutCount();
+                assertEquals("커밋 전에는 다른 트랜잭션이 이전 재고를 읽는다.", 10, readStock(reader, itemId));
+                assertEquals("커밋 전에 읽은 이전 재고는 캐시에 올라가면 안 된다.", puts, statistics.getSecondLevelCachePutCount());
+            });
+
+            //then
+            assertEquals("커밋 후에는 차감된 재고를 읽어야 한다.", 7, itemService.findOne(itemId).getStockQuantity());
+            long hits = statistics.getSecondLevelCacheHitCount();
+            assertEquals(7, itemService.findOne(itemId).getStockQuantity());
+            assertEquals("커밋 후에 읽은 값은 다시 캐시에서 읽어야 한다.", hits + 1, statistics.getSecondLevelCacheHitCount());
+        } finally {
+            reader.shutdownNow();
+            statistics.setStatisticsEnabled(enabled);
+        }
+    }
+
+    private int readStock(ExecutorService reader, Long itemId) {
+        try {
+            return reader.submit(() -> itemService.findOne(itemId).getStockQuantity()).get(1, TimeUnit.MINUTES);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return {성공 수, 재고 부족 수}
+     */
+    private int[] orderConcurrently(Orderer orderer, Long memberId, Long itemId, int threads, int ordersPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(1);
+        AtomicInteger success = new AtomicInteger();
+        AtomicInteger soldOut = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                ready.await();
+                for (int i = 0; i < ordersPerThread; i++) {
+                    try {
+                        orderer.order(memberId, itemId, 1);
+                        success.incrementAndGet();
+                    } catch (NotEnoughStockException e) {
+                        soldOut.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        ready.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new int[]{success.get(), soldOut.get()};
+    }
+
+    private Long createBook(int stockQuantity) {
+        Book book = new Book();
+        book.setName("인기 도서");
+        book.setPrice(10000);
+        book.setStockQuantity(stockQuantity);
+        itemService.saveItem(book);
+        return book.getId();
+    }
+
+    private Long createMember() {
+        Member member = new Member();
+        member.setName("동시주문-" + System.nanoTime());
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        return memberService.join(member);
+    }
+
+    @FunctionalInterface
+    private interface Orderer {
+        Long order(Long memberId, Long itemId, int count);
+    }
+}
@@ -8,15 +8,22 @@ import jpabook.jpashop.domain.item.Book;
 import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.exception.NotEnoughStockException;
 import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import java.util.*;
+import java.util.stream.Collectors;
 
+import static jpabook.jpashop.monitoring.QueryAssertions.*;
 import static org.junit.Assert.*;
 
 @RunWith(SpringRunner.class)
@@ -64,6 +71,18 @@ public class OrderServiceTest {
         fail("재고 수량 부족 예외가 발행해야 한다.");
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void 없는_회원_주문() throws Exception {
+        //given
+        Item item = createBook("시골 JPA", 10000, 10);
+
+        //when
+        orderService.order(-1L, item.getId(), 1);
+
+        //then
+        fail("없는 회원이면 예외가 발생해야 한다.");
+    }
+
     @Test
     public void 주문취소() throws Exception {
         //given
@@ -84,6 +103,132 @@ public class OrderServiceTest {
         assertEquals("주문이 취소된 상품은 그만큼 재고가 증가해야 한다.", 10, item.getStockQuantity());
     }
 
+    @Test
+    public void 장바구니주문() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000, 10);
+        Book book2 = createBook("토비의 봄", 20000, 5);
+
+        Map<Long, Integer> itemCounts = new LinkedHashMap<>();
+        itemCounts.put(book1.getId(), 2);
+        itemCounts.put(book2.getId(), 3);
+
+        //when
+        Long orderId = orderService.checkout(member.getId(), itemCounts);
+
+        //then
+        Order getOrder = orderRepository.findOne(orderId);
+
+        assertEquals("장바구니 상품 수만큼 주문상품이 생겨야 한다.", 2, getOrder.getOrderItems().size());
+        assertEquals("주문 가격은 상품별 가격 * 수량의 합이다.", 10000 * 2 + 20000 * 3, getOrder.getTotalPrice());
+        assertEquals("주문 수량은 상품별 수량의 합이다.", 5, getOrder.getItemCount());
+        assertEquals(8, book1.getStockQuantity());
+        assertEquals(2, book2.getStockQuantity());
+    }
+
+    @Test
+    public void 주문검색() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000, 10);
+        Book book2 = createBook("토비의 봄", 20000, 10);
+
+        Long orderId1 = orderService.order(member.getId(), book1.getId(), 1);
+        Long orderId2 = orderService.order(member.getId(), book2.getId(), 2);
+        Long orderId3 = orderService.order(member.getId(), book2.getId(), 1);
+        orderService.cancelOrder(orderId3);
+
+        //when
+        OrderSearch byName = new OrderSearch();
+        byName.setMemberName("회원");
+        OrderSearch byItemAndStatus = new OrderSearch();
+        byItemAndStatus.setItemId(book2.getId());
+        byItemAndStatus.setOrderStatus(OrderStatus.ORDER);
+        OrderSearch byTotalPrice = new OrderSearch();
+        byTotalPrice.setMemberId(member.getId());
+        byTotalPrice.setMinTotalPrice(20000);
+
+        //then
+        Slice<Order> firstPage = orderService.searchOrders(byName, PageRequest.of(0, 2));
+        assertEquals("이름 앞부분 일치", 2, firstPage.getNumberOfElements());
+        assertTrue("size + 1 건으로 다음 페이지 여부를 판단한다.", firstPage.hasNext());
+        assertFalse(orderService.searchOrders(byName, PageRequest.of(1, 2)).hasNext());
+
+        OrderSearch byExactName = new OrderSearch();
+        byExactName.setMemberName("회원");
+        byExactName.setNameMatch(OrderSearch.NameMatch.EXACT);
+        assertTrue(orderService.searchOrders(byExactName, PageRequest.of(0, 10)).isEmpty());
+
+        assertEquals(Collections.singletonList(orderId2), ids(orderService.searchOrders(byItemAndStatus, PageRequest.of(0, 10))));
+        assertEquals(Arrays.asList(orderId3, orderId2), ids(orderService.searchOrders(byTotalPrice, PageRequest.of(0, 10))));
+
+        OrderSearch byMember = new OrderSearch();
+        byMember.setMemberId(member.getId());
+        assertEquals("전체 주문 가격으로 정렬", Arrays.asList(orderId1, orderId3, orderId2),
+                ids(orderService.searchOrders(byMember, PageRequest.of(0, 10, Sort.by("totalPrice")))));
+    }
+
+    @Test
+    public void 주문검색_회원이름_많이_걸리면_조인조건() throws Exception {
+        //given
+        Book book = createBook("시골 JPA", 10000, 10);
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Member member = createMember();
+            member.setName("청크회원" + i);
+            orderIds.add(0, orderService.order(member.getId(), book.getId(), 1));
+        }
+        OrderSearch byName = new OrderSearch();
+        byName.setMemberName("청크회원");
+
+        //when
+        OrderRepository chunked = new OrderRepository(em, 2, 5); //회원 id 5개를 IN 절 3개로
+        OrderRepository joined = new OrderRepository(em, 2, 4); //회원 5명이 걸리므로 이름 조인 조건
+
+        //then
+        assertEquals(orderIds, ids(chunked.search(byName, PageRequest.of(0, 10))));
+        assertEquals(orderIds, ids(joined.search(byName, PageRequest.of(0, 10))));
+    }
+
+    @Test
+    public void 상품주문_쿼리수() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 10);
+        em.flush();
+
+        //when
+        startQueryCount();
+        orderService.order(member.getId(), book.getId(), 2);
+        em.flush();
+
+        //then
+        assertQueryCount(6); //update(item 재고 차감) 1 + select(영속 상태인 item 다시 읽기) 1 + insert(sales_delta) 1 + insert(delivery, orders, order_item) 3
+    }
+
+    @Test
+    public void 주문취소_쿼리수() throws Exception {
+        //given
+        Member member = createMember();
+        Book item = createBook("시골 JPA", 10000, 10);
+        Long orderId = orderService.order(member.getId(), item.getId(), 2);
+        em.flush();
+        em.clear();
+
+        //when
+        startQueryCount();
+        orderService.cancelOrder(orderId);
+        em.flush();
+
+        //then
+        assertQueryCount(4); //select(orders + delivery + order_item 페치 조인) 1 + update(item 재고 복구) 1 + insert(sales_delta) 1 + update(orders) 1
+    }
+
+    private static List<Long> ids(Slice<Order> orders) {
+        return orders.stream().map(Order::getId).collect(Collectors.toList());
+    }
+
     private Book createBook(String name, int price, int stockQuantity) {
         Book book = new Book();
         book.setName(name);
@@ -0,0 +1,119 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.stats.MemberSales;
+import jpabook.jpashop.repository.stats.ItemSalesDto;
+import jpabook.jpashop.repository.stats.SalesRollupRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class SalesRollupServiceTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+    @Autowired SalesRollupService salesRollupService;
+    @Autowired SalesRollupRepository salesRollupRepository;
+
+    @Test
+    public void 주문_취소_집계반영() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000);
+        Book book2 = createBook("토비의 봄", 20000);
+
+        orderService.order(member.getId(), book1.getId(), 2);
+        orderService.order(member.getId(), book1.getId(), 1);
+        Long canceled = orderService.order(member.getId(), book2.getId(), 3);
+        orderService.cancelOrder(canceled);
+
+        //when
+        assertTrue(salesRollupService.fold() >= 4);
+
+        //then
+        em.clear();
+        MemberSales memberSales = em.find(MemberSales.class, member.getId());
+        assertEquals("취소한 주문은 빠진다.", 30000, memberSales.getRevenue());
+        assertEquals(3, memberSales.getUnits());
+        assertEquals(2, memberSales.getOrderCount());
+        assertEquals(30000, findItemSales(book1.getId()).getRevenue());
+        assertEquals(3, findItemSales(book1.getId()).getUnits());
+        assertEquals(0, findItemSales(book2.getId()).getUnits());
+        assertEquals("반영한 기록은 지운다.", 0, salesRollupService.fold());
+
+        //다시 계산해도 같다.
+        salesRollupService.rebuild();
+        em.clear();
+        memberSales = em.find(MemberSales.class, member.getId());
+        assertEquals(30000, memberSales.getRevenue());
+        assertEquals(2, memberSales.getOrderCount());
+        assertEquals(30000, findItemSales(book1.getId()).getRevenue());
+        assertNull("취소만 있는 상품은 집계에 없다.", findItemSales(book2.getId()));
+    }
+
+    @Test
+    public void 재계산_후_미반영_기록은_한번만_더해짐() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000);
+        orderService.order(member.getId(), book.getId(), 1);
+        Long canceled = orderService.order(member.getId(), book.getId(), 3);
+        salesRollupService.fold();
+        orderService.order(member.getId(), book.getId(), 2); //재계산 시점에 아직 반영 안 된 주문
+        orderService.cancelOrder(canceled); //반영 안 된 취소
+
+        //when
+        salesRollupService.rebuild();
+        em.clear();
+        MemberSales rebuilt = em.find(MemberSales.class, member.getId());
+        assertEquals("미반영 기록만큼 빠져 있다. (주문 20000 은 빼고 취소 30000 은 더해서)", 40000, rebuilt.getRevenue());
+        assertEquals(2, salesRollupService.fold());
+
+        //then
+        em.clear();
+        MemberSales memberSales = em.find(MemberSales.class, member.getId());
+        assertEquals(30000, memberSales.getRevenue());
+        assertEquals(3, memberSales.getUnits());
+        assertEquals(2, memberSales.getOrderCount());
+        assertEquals(30000, findItemSales(book.getId()).getRevenue());
+        assertEquals(3, findItemSales(book.getId()).getUnits());
+    }
+
+    private ItemSalesDto findItemSales(Long itemId) {
+        LocalDate today = LocalDate.now();
+        return salesRollupRepository.findTopItems(today, today, Integer.MAX_VALUE).stream()
+                .filter(s -> s.getItemId().equals(itemId))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private Book createBook(String name, int price) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(10);
+        em.persist(book);
+        return book;
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("매출회원");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+}